@@ -2,15 +2,28 @@ package org.wikimedia.eventutilities.core.event;
 
 import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.wikimedia.eventutilities.core.json.JsonLoader;
 import org.wikimedia.eventutilities.core.json.JsonLoadingException;
 import org.wikimedia.eventutilities.core.json.JsonSchemaLoader;
 
 import java.net.URI;
+import java.util.AbstractMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -37,13 +50,97 @@ public class EventSchemaLoader {
 
     protected static final String SCHEMA_FIELD_DEFAULT = "/$schema";
     protected static final String LATEST_FILE_NAME = "latest";
+    protected static final long NEGATIVE_CACHE_TTL_MILLIS_DEFAULT = 30_000L;
+    protected static final long SCHEMA_URIS_CACHE_MAX_SIZE_DEFAULT = 10_000L;
+    protected static final long RESOLUTION_TTL_MILLIS_DEFAULT = 60_000L;
 
     protected final List<String> baseUris;
     protected final JsonPointer schemaFieldPointer;
-    protected final JsonSchemaLoader schemaLoader = JsonSchemaLoader.getInstance();
+    protected final JsonSchemaLoader schemaLoader;
+
+    /**
+     * If set, loadFirst probes schema URIs concurrently using this executor.
+     */
+    protected volatile ScheduledExecutorService probeExecutor = null;
+
+    /**
+     * Delay between starting concurrent probes of successive schema URIs.
+     */
+    protected volatile long probeHedgeDelayMillis = 0;
+
+    /**
+     * Remembers schema URIs that were recently not found, so loadFirst can skip them.
+     * If null, every schema URI is always tried.  Disabled by default, since it delays
+     * seeing schemas published right after a failed lookup; enable it with setNegativeCacheTtl.
+     */
+    protected volatile NegativeSchemaCache negativeCache = null;
+
+    /**
+     * How long a schema found under a base URI other than the first is used
+     * without looking at the higher priority base URIs again.
+     */
+    protected volatile long resolutionTtlMillis = RESOLUTION_TTL_MILLIS_DEFAULT;
+
+    /**
+     * Memoizes the URIs derived from schema URI strings, keyed by the raw schema URI string.
+     * There are usually only a few hundred distinct schema URIs, so after warm up
+     * looking up the possible schema URIs of an event is a single hash lookup.
+     */
+    protected final Cache<String, SchemaUris> schemaUrisCache = Caffeine.newBuilder()
+        .maximumSize(SCHEMA_URIS_CACHE_MAX_SIZE_DEFAULT)
+        .executor(Runnable::run)
+        .build();
+
+    /**
+     * Builds the SchemaUris missing from schemaUrisCache.  Kept in a field so that
+     * a cache lookup does not allocate a new method reference.
+     */
+    private final Function<String, SchemaUris> schemaUrisBuilder = this::buildSchemaUris;
+
+    protected final LongAdder resolvedSchemaHits = new LongAdder();
+    protected final LongAdder resolvedSchemaMisses = new LongAdder();
 
     private static final Logger log = LogManager.getLogger(EventSchemaLoader.class.getName());
 
+    /**
+     * A schema URI and the fully qualified URIs at which it and its
+     * latest version might be found, as well as where they were last found.
+     */
+    protected static final class SchemaUris {
+        final URI schemaUri;
+        final URI latestSchemaUri;
+        final List<URI> possibleSchemaUris;
+        final List<URI> possibleLatestSchemaUris;
+        volatile Resolution resolution;
+        volatile Resolution latestResolution;
+
+        SchemaUris(URI schemaUri, URI latestSchemaUri, List<URI> possibleSchemaUris, List<URI> possibleLatestSchemaUris) {
+            this.schemaUri = schemaUri;
+            this.latestSchemaUri = latestSchemaUri;
+            this.possibleSchemaUris = possibleSchemaUris;
+            this.possibleLatestSchemaUris = possibleLatestSchemaUris;
+        }
+    }
+
+    /**
+     * The fully qualified URI at which a schema was found, and the base URI it was found under.
+     */
+    protected static final class Resolution {
+        final URI resolvedSchemaUri;
+        final String baseUri;
+        final long expiresAtMillis;
+
+        Resolution(URI resolvedSchemaUri, String baseUri, long expiresAtMillis) {
+            this.resolvedSchemaUri = resolvedSchemaUri;
+            this.baseUri = baseUri;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        boolean isExpired() {
+            return expiresAtMillis != Long.MAX_VALUE && expiresAtMillis <= System.currentTimeMillis();
+        }
+    }
+
     /**
      * Constructs a EventSchemaLoader with no baseURI prefixes and uses /$schema to extract
      * schema URIs from events.
@@ -77,8 +174,22 @@ public class EventSchemaLoader {
      * @param schemaField
      */
     public EventSchemaLoader(List<String> baseUris, String schemaField) {
+        this(baseUris, schemaField, JsonSchemaLoader.getInstance());
+    }
+
+    /**
+     * Constructs a EventSchemaLoader that prefixes URIs with baseURI,
+     * extracts schema URIs from the schemaField in events, and loads and caches
+     * schemas with schemaLoader.  Use this to give the EventSchemaLoader
+     * its own JsonSchemaLoader, e.g. one with a bounded JsonSchemaCachePolicy.
+     * @param baseUris
+     * @param schemaField
+     * @param schemaLoader
+     */
+    public EventSchemaLoader(List<String> baseUris, String schemaField, JsonSchemaLoader schemaLoader) {
         this.baseUris = baseUris;
         this.schemaFieldPointer = JsonPointer.compile(schemaField);
+        this.schemaLoader = schemaLoader;
     }
 
     /**
@@ -95,63 +206,357 @@ public class EventSchemaLoader {
     /**
      * Given a list of schemaURIs, this returns the first successfully loaded schema.
      * If no schema is found, an exception will be thrown.
+     *
+     * If concurrent probing is enabled, schemaURIs are tried concurrently
+     * (see enableConcurrentProbing), otherwise they are tried one after the other.
+     * Either way, the schema at the earliest successful URI in the list is returned.
+     *
+     * schemaURIs that recently failed because nothing was found there are skipped
+     * (see setNegativeCacheTtl).
+     *
      * @param schemaURIs
      * @return
      */
     public JsonNode loadFirst(List<URI> schemaURIs) throws JsonLoadingException {
-        JsonNode schema = null;
+        return loadFirstEntry(schemaURIs).getValue();
+    }
+
+    /**
+     * Like loadFirst, but returns the URI the schema was loaded from along with the schema.
+     * @param schemaURIs
+     * @return
+     * @throws JsonLoadingException
+     */
+    protected Map.Entry<URI, JsonNode> loadFirstEntry(List<URI> schemaURIs) throws JsonLoadingException {
+        NegativeSchemaCache notFoundCache = this.negativeCache;
+        if (notFoundCache != null) {
+            List<URI> candidateURIs = new ArrayList<>(schemaURIs.size());
+            for (URI schemaURI : schemaURIs) {
+                if (!notFoundCache.isNotFound(schemaURI)) {
+                    candidateURIs.add(schemaURI);
+                }
+            }
+            if (candidateURIs.isEmpty() && !schemaURIs.isEmpty()) {
+                throw new JsonLoadingException(
+                    "No schema was found at any of " + schemaURIs + " (cached not found result)"
+                );
+            }
+            schemaURIs = candidateURIs;
+        }
+
+        ScheduledExecutorService executor = this.probeExecutor;
+        if (executor != null && schemaURIs.size() > 1) {
+            // No need to probe concurrently if the highest priority schema is already cached.
+            JsonNode cachedSchema = schemaLoader.cacheGet(schemaURIs.get(0));
+            if (cachedSchema != null) {
+                return new AbstractMap.SimpleImmutableEntry<>(schemaURIs.get(0), cachedSchema);
+            }
+            return loadFirstConcurrently(schemaURIs, executor, this.probeHedgeDelayMillis);
+        }
+
         List<JsonLoadingException> loaderExceptions = new ArrayList<>();
 
         for (URI schemaURI: schemaURIs) {
             try {
-                schema = this.load(schemaURI);
-                break;
+                return new AbstractMap.SimpleImmutableEntry<>(schemaURI, this.loadCandidate(schemaURI));
             } catch (JsonLoadingException e) {
                 loaderExceptions.add(e);
             }
         }
 
-        if (schema != null) {
-            return schema;
-        } else {
-            // If we failed loading a schema but we encountered any JsonSchemaLoaderExceptions
-            // while trying, log them all but only throw the first one.
-            if (!loaderExceptions.isEmpty()) {
-                for (JsonLoadingException e: loaderExceptions) {
-                    log.error("Got JsonSchemaLoaderException when trying to load event schema", e);
+        throw loadFirstFailure(loaderExceptions);
+    }
+
+    /**
+     * Loads schemaURI as one of loadFirst's candidates, remembering it in
+     * the negative cache if nothing was found there.
+     * @param schemaURI
+     * @return
+     * @throws JsonLoadingException
+     */
+    private JsonNode loadCandidate(URI schemaURI) throws JsonLoadingException {
+        try {
+            return this.load(schemaURI);
+        } catch (JsonLoadingException e) {
+            NegativeSchemaCache notFoundCache = this.negativeCache;
+            if (notFoundCache != null && JsonLoader.isNotFoundException(e)) {
+                notFoundCache.putNotFound(schemaURI);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sets how long loadFirst skips schema URIs at which no schema was found,
+     * e.g. NEGATIVE_CACHE_TTL_MILLIS_DEFAULT.  This is disabled by default.
+     * A ttlMillis of 0 disables this, so that every schema URI is always tried.
+     * Any currently remembered not found schema URIs are forgotten.
+     * @param ttlMillis
+     */
+    public void setNegativeCacheTtl(long ttlMillis) {
+        this.negativeCache = ttlMillis > 0 ? new NegativeSchemaCache(ttlMillis) : null;
+    }
+
+    /**
+     * Returns the cache of recently not found schema URIs, e.g. to read its
+     * hit and miss counts.  Returns null if it is disabled.
+     * @return
+     */
+    public NegativeSchemaCache getNegativeCache() {
+        return this.negativeCache;
+    }
+
+    /**
+     * Enables concurrent probing of schema URIs in loadFirst.
+     *
+     * The highest priority URI is tried first.  Each next URI is tried either
+     * hedgeDelayMillis after the previous one was started, or as soon as the
+     * previous one fails, whichever comes first.  With a hedgeDelayMillis of 0,
+     * all URIs are tried at once.  The earliest URI in the list that succeeds wins,
+     * even if a later one finishes first, and the attempts at later URIs are then cancelled.
+     *
+     * The executor is used to run and schedule the load attempts.  It is not shut down
+     * by this EventSchemaLoader.
+     *
+     * @param executor
+     * @param hedgeDelayMillis
+     */
+    public void enableConcurrentProbing(ScheduledExecutorService executor, long hedgeDelayMillis) {
+        this.probeHedgeDelayMillis = hedgeDelayMillis;
+        this.probeExecutor = executor;
+    }
+
+    /**
+     * Disables concurrent probing of schema URIs in loadFirst.
+     */
+    public void disableConcurrentProbing() {
+        this.probeExecutor = null;
+    }
+
+    /**
+     * Concurrent implementation of loadFirst.  See enableConcurrentProbing.
+     * @param schemaURIs
+     * @param executor
+     * @param hedgeDelayMillis
+     * @return the URI the schema was loaded from and the schema
+     * @throws JsonLoadingException
+     */
+    protected Map.Entry<URI, JsonNode> loadFirstConcurrently(
+        List<URI> schemaURIs,
+        ScheduledExecutorService executor,
+        long hedgeDelayMillis
+    ) throws JsonLoadingException {
+        List<ProbeAttempt> attempts = new ArrayList<>(schemaURIs.size());
+        for (URI schemaURI : schemaURIs) {
+            attempts.add(new ProbeAttempt(schemaURI, executor));
+        }
+
+        List<Future<?>> scheduledStarts = new ArrayList<>();
+        attempts.get(0).start();
+        for (int i = 1; i < attempts.size(); i++) {
+            ProbeAttempt attempt = attempts.get(i);
+            // Start this attempt right away if the previous one fails...
+            attempts.get(i - 1).result.whenComplete((schema, throwable) -> {
+                if (throwable != null) {
+                    attempt.start();
                 }
-                throw loaderExceptions.get(0);
+            });
+            // ...or once the hedge delay has passed.
+            if (hedgeDelayMillis > 0) {
+                scheduledStarts.add(
+                    executor.schedule(attempt::start, hedgeDelayMillis * i, TimeUnit.MILLISECONDS)
+                );
             } else {
-                throw new RuntimeException(this + " failed loading event schema");
+                attempt.start();
+            }
+        }
+
+        List<JsonLoadingException> loaderExceptions = new ArrayList<>();
+        try {
+            // Wait for the attempts in priority order, so that a success at a lower
+            // priority URI is only used if all higher priority ones failed.
+            for (ProbeAttempt attempt : attempts) {
+                try {
+                    return new AbstractMap.SimpleImmutableEntry<>(attempt.schemaURI, attempt.result.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof JsonLoadingException) {
+                        loaderExceptions.add((JsonLoadingException) cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonLoadingException(this + " interrupted while loading event schema", e);
+        } finally {
+            // Cancel anything that is still scheduled or running.
+            for (Future<?> scheduledStart : scheduledStarts) {
+                scheduledStart.cancel(false);
+            }
+            // Cancel in reverse order, so that cancelling an attempt
+            // does not start the next one.
+            for (int i = attempts.size() - 1; i >= 0; i--) {
+                attempts.get(i).cancel();
+            }
+        }
+
+        throw loadFirstFailure(loaderExceptions);
+    }
+
+    /**
+     * A single attempt to load a schema URI during concurrent probing.
+     */
+    private class ProbeAttempt implements Runnable {
+        final URI schemaURI;
+        final ScheduledExecutorService executor;
+        final CompletableFuture<JsonNode> result = new CompletableFuture<>();
+        final AtomicBoolean started = new AtomicBoolean(false);
+        volatile Future<?> task;
+
+        ProbeAttempt(URI schemaURI, ScheduledExecutorService executor) {
+            this.schemaURI = schemaURI;
+            this.executor = executor;
+        }
+
+        /**
+         * Submits this attempt to the executor, unless it was already started or cancelled.
+         */
+        void start() {
+            if (started.compareAndSet(false, true)) {
+                task = executor.submit(this);
+            }
+        }
+
+        /**
+         * Prevents this attempt from starting.  If it is already running, it is left
+         * to finish and its result is ignored.  It is not interrupted, since it may be
+         * the single-flight load of its URI in the JsonSchemaLoader that other
+         * callers are waiting on, and they would all see the interruption as a failure.
+         */
+        void cancel() {
+            started.set(true);
+            result.cancel(false);
+            Future<?> runningTask = task;
+            if (runningTask != null) {
+                runningTask.cancel(false);
+            }
+        }
+
+        public void run() {
+            try {
+                result.complete(loadCandidate(schemaURI));
+            } catch (JsonLoadingException | RuntimeException e) {
+                result.completeExceptionally(e);
             }
         }
     }
 
+    /**
+     * Logs all of the loaderExceptions encountered while trying to load a schema,
+     * and returns the first one to be thrown.
+     * @param loaderExceptions
+     * @return
+     */
+    private JsonLoadingException loadFirstFailure(List<JsonLoadingException> loaderExceptions) {
+        // If we failed loading a schema but we encountered any JsonSchemaLoaderExceptions
+        // while trying, log them all but only throw the first one.
+        if (!loaderExceptions.isEmpty()) {
+            for (JsonLoadingException e: loaderExceptions) {
+                log.error("Got JsonSchemaLoaderException when trying to load event schema", e);
+            }
+            return loaderExceptions.get(0);
+        } else {
+            throw new RuntimeException(this + " failed loading event schema");
+        }
+    }
+
     /**
      * Extracts the value at schemaFieldPointer from the event as a URI
      * @param event
      * @return schema URI
      */
     public URI extractSchemaUri(JsonNode event) {
-        String uriString = event.at(this.schemaFieldPointer).textValue();
+        return getSchemaUris(event).schemaUri;
+    }
+
+    /**
+     * Extracts the value at schemaFieldPointer from the JSON event string as a URI.
+     * Only the event tokens up to the schema field are read, the event is
+     * not parsed into a JsonNode.
+     * @param eventString
+     * @return schema URI
+     */
+    public URI extractSchemaUri(String eventString) throws JsonLoadingException {
+        return getSchemaUris(JsonLoader.getInstance().extractText(eventString, this.schemaFieldPointer)).schemaUri;
+    }
+
+    /**
+     * Extracts the value at schemaFieldPointer from the UTF-8 encoded JSON event bytes
+     * as a URI.  Only the event tokens up to the schema field are read.
+     * @param eventBytes
+     * @return schema URI
+     */
+    public URI extractSchemaUri(byte[] eventBytes) throws JsonLoadingException {
+        return getSchemaUris(JsonLoader.getInstance().extractText(eventBytes, this.schemaFieldPointer)).schemaUri;
+    }
+
+    /**
+     * Returns the memoized SchemaUris for the event's schema URI string.
+     * @param event
+     * @return
+     */
+    SchemaUris getSchemaUris(JsonNode event) {
+        return getSchemaUris(event.at(this.schemaFieldPointer).textValue());
+    }
+
+    /**
+     * Returns the memoized SchemaUris for the schema URI string, building them if needed.
+     * @param uriString
+     * @return
+     */
+    private SchemaUris getSchemaUris(String uriString) {
+        if (uriString == null) {
+            throw new RuntimeException("Event has no schema URI string at " + this.schemaFieldPointer);
+        }
+        return schemaUrisCache.get(uriString, schemaUrisBuilder);
+    }
+
+    /**
+     * Builds a URI from the schema URI string and prepends it and its
+     * latest version with each of the baseUris.
+     * @param uriString
+     * @return
+     */
+    private SchemaUris buildSchemaUris(String uriString) {
+        URI schemaUri;
         try {
-            return new URI(uriString);
+            schemaUri = new URI(uriString);
         }
         catch (java.net.URISyntaxException e) {
             throw new RuntimeException(
                     "Failed building new URI from " + uriString + ". " + e.getMessage()
             );
         }
+        URI latestSchemaUri = schemaUri.resolve(LATEST_FILE_NAME);
+        return new SchemaUris(
+            schemaUri,
+            latestSchemaUri,
+            prependBaseUris(schemaUri),
+            prependBaseUris(latestSchemaUri)
+        );
     }
 
     /**
      * Prepends the schemaUri with each of the baseUris.
-     * (Note, the Urls returned here are fully qualified).
      * @param schemaUri
-     * @return List of urls prepended with this EventSchemaLoader's base URIs.
+     * @return unmodifiable List of urls prepended with this EventSchemaLoader's base URIs.
      */
-    public List<URI> getPossibleSchemaUrls(URI schemaUri) {
-        return this.baseUris.stream().map(baseUri -> {
+    private List<URI> prependBaseUris(URI schemaUri) {
+        return Collections.unmodifiableList(this.baseUris.stream().map(baseUri -> {
              try {
                  return new URI(baseUri + schemaUri);
              }
@@ -161,7 +566,17 @@ public class EventSchemaLoader {
                      e.getMessage()
                  );
              }
-        }).collect(Collectors.toList());
+        }).collect(Collectors.toList()));
+    }
+
+    /**
+     * Prepends the schemaUri with each of the baseUris.
+     * (Note, the Urls returned here are fully qualified).
+     * @param schemaUri
+     * @return List of urls prepended with this EventSchemaLoader's base URIs.
+     */
+    public List<URI> getPossibleSchemaUrls(URI schemaUri) {
+        return new ArrayList<>(getSchemaUris(schemaUri.toString()).possibleSchemaUris);
     }
 
     /**
@@ -171,7 +586,7 @@ public class EventSchemaLoader {
      * @return List of schema URIs where this event's schema might be.
      */
     public List<URI> getPossibleSchemaUrls(JsonNode event) {
-        return getPossibleSchemaUrls(extractSchemaUri(event));
+        return new ArrayList<>(getSchemaUris(event).possibleSchemaUris);
     }
 
     /**
@@ -191,7 +606,7 @@ public class EventSchemaLoader {
      * @return 'latest' version of this event's schema URI
      */
     public URI getLatestSchemaUri(JsonNode event) {
-        return getLatestSchemaUri(extractSchemaUri(event));
+        return getSchemaUris(event).latestSchemaUri;
     }
 
 
@@ -200,7 +615,7 @@ public class EventSchemaLoader {
      * @return a List of possible 'latest' schmea uris
      */
     public List<URI> getPossibleLatestSchemaUrls(URI schemaUri) {
-        return getPossibleSchemaUrls(getLatestSchemaUri(schemaUri));
+        return new ArrayList<>(getSchemaUris(schemaUri.toString()).possibleLatestSchemaUris);
     }
 
     /**
@@ -219,7 +634,7 @@ public class EventSchemaLoader {
      * @return List of schema URIs where this event's latest schema might be.
      */
     public List<URI> getPossibleLatestSchemaUrls(JsonNode event) {
-        return getPossibleLatestSchemaUrls(getLatestSchemaUri(event));
+        return new ArrayList<>(getSchemaUris(event).possibleLatestSchemaUris);
     }
 
 
@@ -230,7 +645,7 @@ public class EventSchemaLoader {
      * @throws JsonLoadingException
      */
     public JsonNode getSchema(URI schemaUri) throws JsonLoadingException {
-        return this.loadFirst(this.getPossibleSchemaUrls(schemaUri));
+        return this.getResolvedSchema(getSchemaUris(schemaUri.toString()), false);
     }
 
     /**
@@ -240,7 +655,103 @@ public class EventSchemaLoader {
      * @throws JsonLoadingException
      */
     public JsonNode getLatestSchema(URI schemaUri) throws JsonLoadingException {
-        return this.loadFirst(this.getPossibleLatestSchemaUrls(schemaUri));
+        return this.getResolvedSchema(getSchemaUris(schemaUri.toString()), true);
+    }
+
+    /**
+     * Returns the schema (or latest schema) for schemaUris.  If it was found before
+     * and is still cached by the schemaLoader, it is returned without looking
+     * through all of the possible schema URIs again.
+     *
+     * A schema found at the first base URI is remembered for as long as it is cached.
+     * A schema found at a later base URI is only remembered for resolutionTtlMillis
+     * (see setResolutionTtl), so that it is eventually seen if it is published
+     * to a higher priority base URI.
+     *
+     * @param schemaUris
+     * @param latest
+     * @return
+     * @throws JsonLoadingException
+     */
+    protected JsonNode getResolvedSchema(SchemaUris schemaUris, boolean latest) throws JsonLoadingException {
+        Resolution resolution = latest ? schemaUris.latestResolution : schemaUris.resolution;
+        if (resolution != null && !resolution.isExpired()) {
+            JsonNode schema = schemaLoader.cacheGet(resolution.resolvedSchemaUri);
+            if (schema != null) {
+                resolvedSchemaHits.increment();
+                return schema;
+            }
+        }
+        resolvedSchemaMisses.increment();
+
+        List<URI> possibleSchemaUris = latest ?
+            schemaUris.possibleLatestSchemaUris : schemaUris.possibleSchemaUris;
+        Map.Entry<URI, JsonNode> loaded = loadFirstEntry(possibleSchemaUris);
+
+        int baseUriIndex = possibleSchemaUris.indexOf(loaded.getKey());
+        long ttlMillis = this.resolutionTtlMillis;
+        if (baseUriIndex == 0 || (baseUriIndex > 0 && ttlMillis > 0)) {
+            resolution = new Resolution(
+                loaded.getKey(),
+                baseUris.get(baseUriIndex),
+                baseUriIndex == 0 ?
+                    Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis
+            );
+            if (latest) {
+                schemaUris.latestResolution = resolution;
+            } else {
+                schemaUris.resolution = resolution;
+            }
+        }
+        return loaded.getValue();
+    }
+
+    /**
+     * Sets how long a schema found under a base URI other than the first is
+     * used without looking at the higher priority base URIs again.
+     * A ttlMillis of 0 or less always looks at them again.
+     * @param ttlMillis
+     */
+    public void setResolutionTtl(long ttlMillis) {
+        this.resolutionTtlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the base URI under which the schema at schemaUri was last found,
+     * or null if it has not been found recently.
+     * @param schemaUri
+     * @return
+     */
+    public String getResolvedBaseUri(URI schemaUri) {
+        SchemaUris schemaUris = schemaUrisCache.getIfPresent(schemaUri.toString());
+        Resolution resolution = schemaUris == null ? null : schemaUris.resolution;
+        return resolution == null || resolution.isExpired() ? null : resolution.baseUri;
+    }
+
+    /**
+     * Number of getSchema and getEventSchema (and latest) calls that were answered
+     * from a previously found schema URI.
+     * @return
+     */
+    public long getResolvedSchemaHitCount() {
+        return resolvedSchemaHits.sum();
+    }
+
+    /**
+     * Number of getSchema and getEventSchema (and latest) calls that had to
+     * look through the possible schema URIs.
+     * @return
+     */
+    public long getResolvedSchemaMissCount() {
+        return resolvedSchemaMisses.sum();
+    }
+
+    /**
+     * Forgets the memoized schema URIs and where schemas were found.
+     * Cached schemas themselves are left in the schemaLoader.
+     */
+    public void clearResolvedSchemas() {
+        schemaUrisCache.invalidateAll();
     }
 
 
@@ -253,7 +764,7 @@ public class EventSchemaLoader {
      * @return
      */
     public JsonNode getEventSchema(JsonNode event) throws JsonLoadingException {
-        return this.loadFirst(this.getPossibleSchemaUrls(event));
+        return this.getResolvedSchema(getSchemaUris(event), false);
     }
 
     /**
@@ -263,8 +774,21 @@ public class EventSchemaLoader {
      * @return
      */
     public JsonNode getEventSchema(String eventString) throws JsonLoadingException {
-        JsonNode event = this.schemaLoader.parse(eventString);
-        return this.getEventSchema(event);
+        return this.getResolvedSchema(
+            getSchemaUris(JsonLoader.getInstance().extractText(eventString, this.schemaFieldPointer)), false
+        );
+    }
+
+    /**
+     * Given UTF-8 encoded JSON event bytes, get its schema URI,
+     * and load and return schema for the event.
+     * @param eventBytes
+     * @return
+     */
+    public JsonNode getEventSchema(byte[] eventBytes) throws JsonLoadingException {
+        return this.getResolvedSchema(
+            getSchemaUris(JsonLoader.getInstance().extractText(eventBytes, this.schemaFieldPointer)), false
+        );
     }
 
 
@@ -276,7 +800,7 @@ public class EventSchemaLoader {
      * @return
      */
     public JsonNode getLatestEventSchema(JsonNode event) throws JsonLoadingException {
-        return this.loadFirst(this.getPossibleLatestSchemaUrls(event));
+        return this.getResolvedSchema(getSchemaUris(event), true);
     }
 
     /**
@@ -286,8 +810,68 @@ public class EventSchemaLoader {
      * @return
      */
     public JsonNode getLatestEventSchema(String eventString) throws JsonLoadingException {
-        JsonNode event = this.schemaLoader.parse(eventString);
-        return getLatestEventSchema(event);
+        return this.getResolvedSchema(
+            getSchemaUris(JsonLoader.getInstance().extractText(eventString, this.schemaFieldPointer)), true
+        );
+    }
+
+    /**
+     * Given UTF-8 encoded JSON event bytes, get its schema URI,
+     * and load and return latest schema for the event.
+     * @param eventBytes
+     * @return
+     */
+    public JsonNode getLatestEventSchema(byte[] eventBytes) throws JsonLoadingException {
+        return this.getResolvedSchema(
+            getSchemaUris(JsonLoader.getInstance().extractText(eventBytes, this.schemaFieldPointer)), true
+        );
+    }
+
+    /**
+     * Returns true if schemaUri is a 'latest' schema URI, i.e. its last path
+     * segment is LATEST_FILE_NAME.
+     * @param schemaUri
+     * @return
+     */
+    public boolean isLatestSchemaUri(URI schemaUri) {
+        String path = schemaUri.getPath();
+        return path != null && (
+            path.equals(LATEST_FILE_NAME) || path.endsWith("/" + LATEST_FILE_NAME)
+        );
+    }
+
+    /**
+     * Starts refreshing cached 'latest' schemas in the background every period.
+     * getLatestSchema and friends keep returning the cached schemas without blocking,
+     * and see a new latest schema version once it has been fetched.
+     *
+     * Note that this refreshes the schemaLoader this EventSchemaLoader uses, which
+     * by default is the JsonSchemaLoader singleton shared with other EventSchemaLoaders.
+     * A JsonSchemaLoader only has one refresh schedule, so this refuses to replace one
+     * that is already running, e.g. started by another component.  Call
+     * stopLatestSchemaRefresh first to change the period.
+     *
+     * @param period
+     * @param unit
+     * @throws IllegalStateException
+     *  if the schemaLoader is already refreshing.
+     */
+    public void startLatestSchemaRefresh(long period, TimeUnit unit) {
+        synchronized (schemaLoader) {
+            if (schemaLoader.isRefreshing()) {
+                throw new IllegalStateException(
+                    "Cannot start refreshing latest schemas, " + schemaLoader + " is already refreshing."
+                );
+            }
+            schemaLoader.startRefreshing(this::isLatestSchemaUri, period, unit);
+        }
+    }
+
+    /**
+     * Stops refreshing cached 'latest' schemas.
+     */
+    public void stopLatestSchemaRefresh() {
+        schemaLoader.stopRefreshing();
     }
 
     public String toString() {
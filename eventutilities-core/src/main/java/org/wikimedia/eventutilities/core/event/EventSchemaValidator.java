@@ -0,0 +1,369 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+import org.wikimedia.eventutilities.core.json.JsonLoadingException;
+import org.wikimedia.eventutilities.core.json.JsonSchemaLoader;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Validates events against their JSONSchemas, as found by an EventSchemaLoader.
+ *
+ * Each schema is compiled into a JsonSchema validator only once.  Compiled validators
+ * are immutable and thread safe, and are cached by schema URI, so validating an event
+ * only costs the schema lookup and the validation itself.  A cached validator is only
+ * used if it was compiled from the very schema JsonNode that was looked up; if a schema
+ * is refreshed in the JsonSchemaLoader cache, it is compiled again and replaces the
+ * old validator.  Concurrent lookups of the same schema URI compile it only once.  At most COMPILED_SCHEMAS_MAX_SIZE_DEFAULT validators are cached.
+ *
+ * Usage:
+ *
+ * EventSchemaValidator validator = new EventSchemaValidator(
+ *     new EventSchemaLoader("https://schema.wikimedia.org/repositories/primary/jsonschema")
+ * );
+ * EventValidationReport report = validator.validate(eventBytes);
+ * if (!report.isSuccess()) {
+ *     log.warn("Invalid event: " + report.getErrors());
+ * }
+ *
+ * // Validate many events in parallel, looking up each distinct schema once:
+ * List<EventValidationReport> reports = validator.validateJsonBytes(eventBytesList);
+ */
+public class EventSchemaValidator {
+
+    /**
+     * Maximum number of compiled validators to cache.
+     */
+    public static final long COMPILED_SCHEMAS_MAX_SIZE_DEFAULT = 1_000L;
+
+    protected final EventSchemaLoader schemaLoader;
+    protected final JsonSchemaFactory jsonSchemaFactory;
+
+    /**
+     * Compiled validators by schema URI.  A compiled JsonSchema references the schema
+     * JsonNode it was compiled from, so this cache must be bounded to not keep
+     * old schemas alive.
+     */
+    protected final Cache<URI, CompiledSchema> compiledSchemas = Caffeine.newBuilder()
+        .maximumSize(COMPILED_SCHEMAS_MAX_SIZE_DEFAULT)
+        .executor(Runnable::run)
+        .build();
+
+    /**
+     * A compiled validator and the schema JsonNode it was compiled from.
+     */
+    protected static final class CompiledSchema {
+        final JsonNode schema;
+        final JsonSchema jsonSchema;
+
+        CompiledSchema(JsonNode schema, JsonSchema jsonSchema) {
+            this.schema = schema;
+            this.jsonSchema = jsonSchema;
+        }
+    }
+
+    /**
+     * Pool that batches of events are validated in.
+     */
+    protected volatile ForkJoinPool batchPool = ForkJoinPool.commonPool();
+
+    /**
+     * Parses a single event of a batch.
+     */
+    private interface EventParser<T> {
+        JsonNode parse(T event) throws JsonLoadingException;
+    }
+
+    /**
+     * @param schemaLoader
+     *  Used to find the schemas of events.
+     */
+    public EventSchemaValidator(EventSchemaLoader schemaLoader) {
+        this(schemaLoader, JsonSchemaFactory.byDefault());
+    }
+
+    /**
+     * @param schemaLoader
+     *  Used to find the schemas of events.
+     * @param jsonSchemaFactory
+     *  Used to compile schemas into validators.
+     */
+    public EventSchemaValidator(EventSchemaLoader schemaLoader, JsonSchemaFactory jsonSchemaFactory) {
+        this.schemaLoader = schemaLoader;
+        this.jsonSchemaFactory = jsonSchemaFactory;
+    }
+
+    /**
+     * Validates the event against the schema at its schema URI.
+     * @param event
+     * @return
+     * @throws JsonLoadingException
+     *  if the event's schema could not be loaded or compiled.
+     */
+    public EventValidationReport validate(JsonNode event) throws JsonLoadingException {
+        EventSchemaLoader.SchemaUris schemaUris = schemaLoader.getSchemaUris(event);
+        return validate(event, schemaUris.schemaUri, schemaLoader.getResolvedSchema(schemaUris, false));
+    }
+
+    /**
+     * Parses the UTF-8 encoded JSON event and validates it against
+     * the schema at its schema URI.
+     * @param eventBytes
+     * @return
+     * @throws JsonLoadingException
+     *  if the event could not be parsed, or its schema could not be loaded or compiled.
+     */
+    public EventValidationReport validate(byte[] eventBytes) throws JsonLoadingException {
+        return validate(parse(eventBytes));
+    }
+
+    /**
+     * Parses the JSON event string and validates it against
+     * the schema at its schema URI.
+     * @param eventString
+     * @return
+     * @throws JsonLoadingException
+     *  if the event could not be parsed, or its schema could not be loaded or compiled.
+     */
+    public EventValidationReport validate(String eventString) throws JsonLoadingException {
+        return validate(parse(eventString));
+    }
+
+    /**
+     * Validates the event against the given schema.
+     * @param event
+     * @param schemaUri
+     *  The event's schema URI.  Used in the returned report, and to cache the
+     *  compiled schema.  If null, the schema is compiled without caching it.
+     * @param schema
+     * @return
+     * @throws JsonLoadingException
+     *  if the schema could not be compiled.
+     */
+    public EventValidationReport validate(JsonNode event, URI schemaUri, JsonNode schema) throws JsonLoadingException {
+        try {
+            return EventValidationReport.fromProcessingReport(
+                schemaUri, getCompiledSchema(schema, schemaUri).validate(event)
+            );
+        } catch (ProcessingException e) {
+            throw new JsonLoadingException("Failed validating event with schema at " + schemaUri, e);
+        }
+    }
+
+    /**
+     * Sets the pool that batches of events are validated in.
+     * By default this is the common ForkJoinPool.
+     * @param batchPool
+     */
+    public void setBatchPool(ForkJoinPool batchPool) {
+        this.batchPool = batchPool;
+    }
+
+    /**
+     * Validates a batch of events.  See validateBatch.
+     * @param events
+     * @return a report for each event, in the same order as events.
+     */
+    public List<EventValidationReport> validateJsonNodes(Iterable<JsonNode> events) {
+        return validateBatch(events, event -> event);
+    }
+
+    /**
+     * Parses and validates a batch of JSON event strings.  See validateBatch.
+     * @param eventStrings
+     * @return a report for each event, in the same order as eventStrings.
+     */
+    public List<EventValidationReport> validateJsonStrings(Iterable<String> eventStrings) {
+        return validateBatch(eventStrings, this::parse);
+    }
+
+    /**
+     * Parses and validates a batch of UTF-8 encoded JSON events.  See validateBatch.
+     * @param eventBytes
+     * @return a report for each event, in the same order as eventBytes.
+     */
+    public List<EventValidationReport> validateJsonBytes(Iterable<byte[]> eventBytes) {
+        return validateBatch(eventBytes, this::parse);
+    }
+
+    /**
+     * Validates a batch of events in the batchPool.
+     *
+     * Events are parsed in parallel and grouped by schema URI.  The distinct schemas
+     * are then loaded and compiled in parallel, each once for the whole batch,
+     * and the events are validated in parallel.
+     *
+     * This does not throw if a single event cannot be validated.  An event that
+     * cannot be parsed, or whose schema cannot be loaded, gets a failed report
+     * with a single fatal error describing why.
+     *
+     * @param events
+     * @param parser
+     * @return a report for each event, in the same order as events.
+     */
+    private <T> List<EventValidationReport> validateBatch(Iterable<T> events, EventParser<T> parser) {
+        List<T> eventList = new ArrayList<>();
+        events.forEach(eventList::add);
+        EventValidationReport[] reports = new EventValidationReport[eventList.size()];
+
+        try {
+            batchPool.submit(() -> validateBatch(eventList, parser, reports)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(this + " interrupted while validating batch of events", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ?
+                (RuntimeException) cause : new RuntimeException(cause);
+        }
+
+        return Arrays.asList(reports);
+    }
+
+    /**
+     * Validates eventList into reports.  Must be run in the batchPool,
+     * so that the parallel streams use it.
+     * @param eventList
+     * @param parser
+     * @param reports
+     */
+    private <T> void validateBatch(List<T> eventList, EventParser<T> parser, EventValidationReport[] reports) {
+        // Parse events and extract their schema URIs.
+        JsonNode[] parsedEvents = new JsonNode[eventList.size()];
+        URI[] schemaUris = new URI[eventList.size()];
+        IntStream.range(0, eventList.size()).parallel().forEach(i -> {
+            try {
+                parsedEvents[i] = parser.parse(eventList.get(i));
+                schemaUris[i] = schemaLoader.extractSchemaUri(parsedEvents[i]);
+            } catch (JsonLoadingException | RuntimeException e) {
+                reports[i] = EventValidationReport.fromException(schemaUris[i], e);
+            }
+        });
+
+        // Load and compile each distinct schema once, in parallel.
+        Map<URI, JsonNode> schemas = new ConcurrentHashMap<>();
+        Map<URI, Exception> schemaFailures = new ConcurrentHashMap<>();
+        Arrays.stream(schemaUris).filter(Objects::nonNull).distinct().parallel().forEach(schemaUri -> {
+            try {
+                JsonNode schema = schemaLoader.getSchema(schemaUri);
+                getCompiledSchema(schema, schemaUri);
+                schemas.put(schemaUri, schema);
+            } catch (JsonLoadingException | RuntimeException e) {
+                schemaFailures.put(schemaUri, e);
+            }
+        });
+
+        // Validate events.
+        IntStream.range(0, eventList.size()).parallel().forEach(i -> {
+            URI schemaUri = schemaUris[i];
+            if (reports[i] != null) {
+                return;
+            }
+            if (schemaFailures.containsKey(schemaUri)) {
+                reports[i] = EventValidationReport.fromException(schemaUri, schemaFailures.get(schemaUri));
+                return;
+            }
+            try {
+                reports[i] = validate(parsedEvents[i], schemaUri, schemas.get(schemaUri));
+            } catch (JsonLoadingException | RuntimeException e) {
+                reports[i] = EventValidationReport.fromException(schemaUri, e);
+            }
+        });
+    }
+
+    /**
+     * Returns the compiled validator for schema, compiling it if the validator
+     * cached for schemaUri was not compiled from this very schema JsonNode.
+     * Concurrent callers for the same schemaUri wait for a single compilation.
+     * @param schema
+     * @param schemaUri
+     * @return
+     * @throws JsonLoadingException
+     *  if the schema could not be compiled.
+     */
+    protected JsonSchema getCompiledSchema(JsonNode schema, URI schemaUri) throws JsonLoadingException {
+        if (schemaUri == null) {
+            return compile(schema, null);
+        }
+
+        CompiledSchema compiledSchema = compiledSchemas.getIfPresent(schemaUri);
+        if (compiledSchema != null && compiledSchema.schema == schema) {
+            return compiledSchema.jsonSchema;
+        }
+
+        try {
+            return compiledSchemas.asMap().compute(schemaUri, (uri, cached) -> {
+                if (cached != null && cached.schema == schema) {
+                    return cached;
+                }
+                try {
+                    return new CompiledSchema(schema, compile(schema, uri));
+                } catch (JsonLoadingException e) {
+                    throw new CompletionException(e);
+                }
+            }).jsonSchema;
+        } catch (CompletionException e) {
+            throw (JsonLoadingException) e.getCause();
+        }
+    }
+
+    /**
+     * @param schema
+     * @param schemaUri
+     * @return
+     * @throws JsonLoadingException
+     *  if the schema could not be compiled.
+     */
+    private JsonSchema compile(JsonNode schema, URI schemaUri) throws JsonLoadingException {
+        try {
+            return jsonSchemaFactory.getJsonSchema(schema);
+        } catch (ProcessingException e) {
+            throw new JsonLoadingException("Failed compiling schema at " + schemaUri, e);
+        }
+    }
+
+    /**
+     * @param eventBytes
+     * @return
+     * @throws JsonLoadingException
+     */
+    protected JsonNode parse(byte[] eventBytes) throws JsonLoadingException {
+        return JsonSchemaLoader.getInstance().parse(eventBytes);
+    }
+
+    /**
+     * @param eventString
+     * @return
+     * @throws JsonLoadingException
+     */
+    protected JsonNode parse(String eventString) throws JsonLoadingException {
+        return JsonSchemaLoader.getInstance().parse(eventString);
+    }
+
+    /**
+     * @return the number of currently cached compiled validators.
+     */
+    public long compiledSchemaCount() {
+        compiledSchemas.cleanUp();
+        return compiledSchemas.estimatedSize();
+    }
+
+    public String toString() {
+        return "EventSchemaValidator(" + schemaLoader + ")";
+    }
+}
@@ -2,6 +2,8 @@ package org.wikimedia.eventutilities.core.event;
 
 import java.net.URI;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -18,6 +20,10 @@ import org.wikimedia.eventutilities.core.json.JsonLoadingException;
  * This class uses Wikimedia specific event stream configuration and schema repositories
  * to abstract looking up stream configuration, schemas, topics and canary events
  * given a stream name.
+ *
+ * Frequently used settings (topics, event service, schema URI) are resolved once
+ * into an EventStreamSettings, which is kept until the stream configs of
+ * eventStreamConfig change.
  */
 public class EventStream {
     /**
@@ -35,6 +41,11 @@ public class EventStream {
      */
     protected EventStreamConfig eventStreamConfig;
 
+    /**
+     * Settings of this stream, resolved from the current EventStreamConfig snapshot.
+     */
+    private volatile EventStreamSettings settings;
+
     /**
      * Constructs a new EventStream.
      * @param streamName
@@ -67,12 +78,36 @@ public class EventStream {
         return eventStreamConfig.getSetting(streamName, settingName);
     }
 
+    /**
+     * Gets the typed settings of this stream.  The returned EventStreamSettings
+     * is resolved once and reused until the cached stream configs change.
+     * @return
+     */
+    public EventStreamSettings settings() {
+        EventStreamSettings currentSettings = settings;
+        if (currentSettings != null && currentSettings.snapshot == eventStreamConfig.streamConfigsSnapshot.get()) {
+            return currentSettings;
+        }
+
+        EventStreamConfigSnapshot snapshot = eventStreamConfig.getSnapshot(Collections.singletonList(streamName));
+        EventStreamConfigSnapshot.Entry entry = snapshot.resolve(streamName);
+        EventStreamSettings newSettings = new EventStreamSettings(
+            streamName, snapshot, entry, eventStreamConfig.eventServiceToUriMap, this::makeSchemaUri
+        );
+        if (currentSettings != null && currentSettings.entry == entry) {
+            newSettings.schemaUri = currentSettings.schemaUri;
+        }
+        settings = newSettings;
+        return newSettings;
+    }
+
     /**
      * Gets the list of Kafka topics that compose this stream.
+     * The returned List is a copy; use settings().getTopics() to avoid copying.
      * @return
      */
     public List<String> topics() {
-        return eventStreamConfig.getTopics(streamName);
+        return new ArrayList<>(settings().getTopics());
     }
 
     /**
@@ -83,7 +118,7 @@ public class EventStream {
      * @return
      */
     public String eventServiceName() {
-        return eventStreamConfig.getEventServiceName(streamName);
+        return settings().getEventServiceName();
     }
 
     /**
@@ -92,7 +127,7 @@ public class EventStream {
      * @return
      */
     public URI eventServiceUri() {
-        return eventStreamConfig.getEventServiceUri(streamName);
+        return settings().getEventServiceUri();
     }
 
     /**
@@ -104,9 +139,7 @@ public class EventStream {
      * @return
      */
     public URI eventServiceUri(String datacenter) {
-        return eventStreamConfig.getEventServiceUri(
-            streamName, datacenter
-        );
+        return settings().getEventServiceUri(datacenter);
     }
 
     /**
@@ -117,7 +150,15 @@ public class EventStream {
      * @return
      */
     public URI schemaUri() {
-        String schemaTitle = eventStreamConfig.getSchemaTitle(streamName);
+        return settings().getSchemaUri();
+    }
+
+    /**
+     * Builds a latest relative schema URI for schemaTitle.  See schemaUri.
+     * @param schemaTitle
+     * @return
+     */
+    protected URI makeSchemaUri(String schemaTitle) {
         // The final part of this URI (here latest) is the schema version.
         // It doesn't actually matter what version we put, since we'll be calling
         // EventSchemaLoader getLatestSchemaUri, and the version will be replaced anyway.
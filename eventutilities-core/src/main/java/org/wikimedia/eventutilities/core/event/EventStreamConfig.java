@@ -2,18 +2,47 @@ package org.wikimedia.eventutilities.core.event;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * Class to fetch and work with stream configuration from the a URI.
  * Upon instantiation, this will attempt to pre fetch and cache all stream config from
  * streamConfigsUri.  Further accesses of uncached stream names will cause
  * a fetch from the result of makeStreamConfigsUriForStreams for the uncached stream names only.
+ *
+ * Stream config names may be regex patterns like /^mediawiki\.job\..+/.  A stream
+ * name that has no stream config of its own uses the config of the first pattern
+ * (in stream config order) that matches it, without fetching anything.
+ *
+ * Cached stream configs are kept in an immutable snapshot indexed by stream name,
+ * so looking up a single cached stream's settings does not copy anything.
+ * JsonNodes returned by methods that do not explicitly make a copy
+ * (e.g. getSettingView, getTopicsView, elementsStream) are shared and must not be modified.
+ *
+ * EventStreamConfig is thread safe.  Reads never lock and always see a consistent
+ * snapshot.  Fetching uncached streams and reset() atomically replace the snapshot;
+ * JsonNodes returned by the EventStreamConfigLoader are never modified.
+ *
+ * Long running processes can reload stream configs in the background with
+ * startRefreshing(), and react to changed stream configs with addChangeListener().
+ * Change listeners are called after every reload that added, removed or changed
+ * any stream config, whether by reset() or by a background refresh.
  */
 public class EventStreamConfig {
 
@@ -32,6 +61,12 @@ public class EventStreamConfig {
      */
     public static final String EVENT_SERVICE_SETTING = "destination_event_service";
 
+    /**
+     * Background refresh delays are randomly spread by up to this fraction of the
+     * refresh period, so that many processes do not all reload at the same time.
+     */
+    public static final double REFRESH_JITTER = 0.1;
+
     /**
      * Maps event service name to a service URL.
      */
@@ -44,9 +79,27 @@ public class EventStreamConfig {
 
     /**
      * Cached stream configurations. This maps stream name (or stream pattern regex)
-     * to stream config settings.
+     * to stream config settings.  The snapshot is immutable, it is atomically
+     * replaced whenever stream configs are loaded.
+     */
+    final AtomicReference<EventStreamConfigSnapshot> streamConfigsSnapshot = new AtomicReference<>();
+
+    /**
+     * Called with the changes of every reset that changed the cached stream configs.
+     */
+    private final List<Consumer<EventStreamConfigChange>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Held while reset replaces the snapshot and notifies changeListeners.
+     */
+    private final Object resetLock = new Object();
+
+    /**
+     * Runs background refreshes, if started.
      */
-    protected ObjectNode streamConfigsCache;
+    private ScheduledExecutorService refreshExecutor;
+
+    private static final Logger log = LogManager.getLogger(EventStreamConfig.class.getName());
 
     /**
      * @param eventStreamConfigLoader
@@ -68,9 +121,132 @@ public class EventStreamConfig {
     /**
      * Re-fetches the content for all stream configs and saves it in the local
      * stream configs cache.  This should fetch and cache all stream configs.
+     * The cache is replaced in one step, concurrent readers see either
+     * all of the old or all of the new stream configs.
+     *
+     * If the loader returns the same ObjectNode as last time (e.g. because its
+     * conditional request got a 304 Not Modified response), the cache is kept as is.
+     * Otherwise, indexed entries of unchanged stream config JsonNodes are reused.
      */
     public void reset() {
-        streamConfigsCache = eventStreamConfigLoader.load();
+        ObjectNode streamConfigs = eventStreamConfigLoader.load();
+
+        // Serialize replacing the snapshot with notifying about it, so that listeners
+        // see the changes of concurrent resets in the order they were applied.
+        // Fetches of uncached streams do not take this lock.
+        synchronized (resetLock) {
+            EventStreamConfigSnapshot previousSnapshot;
+            EventStreamConfigSnapshot nextSnapshot;
+            do {
+                previousSnapshot = streamConfigsSnapshot.get();
+                nextSnapshot = previousSnapshot == null ?
+                    new EventStreamConfigSnapshot(streamConfigs) :
+                    previousSnapshot.replace(streamConfigs);
+            } while (!streamConfigsSnapshot.compareAndSet(previousSnapshot, nextSnapshot));
+
+            if (previousSnapshot != null && previousSnapshot != nextSnapshot && !changeListeners.isEmpty()) {
+                EventStreamConfigChange change = EventStreamConfigChange.between(previousSnapshot, nextSnapshot);
+                if (!change.isEmpty()) {
+                    notifyChangeListeners(change);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers changeListener to be called after every reset or background refresh
+     * that added, removed or changed any cached stream config.  Listeners are called
+     * on the thread that reloaded the stream configs, one reload at a time and in the
+     * order the reloads were applied.  They should return quickly, since concurrent
+     * resets wait for them.
+     * @param changeListener
+     */
+    public void addChangeListener(Consumer<EventStreamConfigChange> changeListener) {
+        changeListeners.add(changeListener);
+    }
+
+    /**
+     * Unregisters a changeListener added with addChangeListener.
+     * @param changeListener
+     */
+    public void removeChangeListener(Consumer<EventStreamConfigChange> changeListener) {
+        changeListeners.remove(changeListener);
+    }
+
+    /**
+     * Calls every change listener with change.  A failing listener is logged,
+     * and does not keep the other listeners from being called.
+     * @param change
+     */
+    private void notifyChangeListeners(EventStreamConfigChange change) {
+        for (Consumer<EventStreamConfigChange> changeListener : changeListeners) {
+            try {
+                changeListener.accept(change);
+            } catch (RuntimeException e) {
+                log.error("Stream config change listener failed on " + change, e);
+            }
+        }
+    }
+
+    /**
+     * Starts periodically calling reset() in a background thread.  Lookups keep being
+     * served from the cached snapshot while stream configs are reloaded.  If reloading
+     * fails, the cached stream configs are kept and the next refresh tries again.
+     *
+     * Each delay between refreshes is randomly spread by up to REFRESH_JITTER of period.
+     * Calling this again replaces the previous refresh schedule.
+     *
+     * @param period
+     * @param unit
+     */
+    public synchronized void startRefreshing(long period, TimeUnit unit) {
+        stopRefreshing();
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EventStreamConfig-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleRefresh(refreshExecutor, unit.toNanos(period));
+    }
+
+    /**
+     * Stops background refreshing started by startRefreshing, if any.
+     */
+    public synchronized void stopRefreshing() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Schedules the next refresh in executor after a jittered periodNanos,
+     * each refresh scheduling the one after it.
+     * @param executor
+     * @param periodNanos
+     */
+    private void scheduleRefresh(ScheduledExecutorService executor, long periodNanos) {
+        long jitterNanos = (long) (periodNanos * REFRESH_JITTER);
+        long delayNanos = jitterNanos > 0 ?
+            periodNanos + ThreadLocalRandom.current().nextLong(-jitterNanos, jitterNanos + 1) :
+            periodNanos;
+
+        try {
+            executor.schedule(() -> {
+                try {
+                    reset();
+                } catch (Throwable e) {
+                    // Also catch Errors (e.g. StackOverflowError from a deeply nested document),
+                    // which would otherwise silently end the refresh schedule.
+                    log.error("Failed refreshing stream configs from " + eventStreamConfigLoader +
+                        ", keeping cached stream configs.", e);
+                } finally {
+                    scheduleRefresh(executor, periodNanos);
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Refreshing was stopped.
+        }
     }
 
     /**
@@ -79,7 +255,7 @@ public class EventStreamConfig {
      * @return
      */
     public Stream<JsonNode> elementsStream() {
-        return StreamSupport.stream(streamConfigsCache.spliterator(), false);
+        return StreamSupport.stream(streamConfigsSnapshot.get().streamConfigs.spliterator(), false);
     }
 
     /**
@@ -88,10 +264,11 @@ public class EventStreamConfig {
      * @return
      */
     public Stream<Map.Entry<String,JsonNode>> fieldsStream() {
+        ObjectNode streamConfigs = streamConfigsSnapshot.get().streamConfigs;
         return StreamSupport.stream(
             Spliterators.spliterator(
-                streamConfigsCache.fields(),
-                streamConfigsCache.size(),
+                streamConfigs.fields(),
+                streamConfigs.size(),
                 Spliterator.SIZED | Spliterator.IMMUTABLE
             ),
             false
@@ -99,11 +276,11 @@ public class EventStreamConfig {
     }
 
     /**
-     * Returns all cached stream configs.
+     * Returns a copy of all cached stream configs.
      * @return
      */
     public ObjectNode cachedStreamConfigs() {
-        return streamConfigsCache.deepCopy();
+        return streamConfigsSnapshot.get().streamConfigs.deepCopy();
     }
 
     /**
@@ -111,9 +288,7 @@ public class EventStreamConfig {
      * @return
      */
     public List<String> cachedStreamNames() {
-        List<String> streamNames = new ArrayList<>();
-        streamConfigsCache.fieldNames().forEachRemaining(streamNames::add);
-        return streamNames;
+        return new ArrayList<>(streamConfigsSnapshot.get().entries.keySet());
     }
 
     /**
@@ -134,22 +309,89 @@ public class EventStreamConfig {
     /**
      * Gets the stream config entries for the desired stream names.
      * Returns a JsonNode map of stream names to stream config entries.
+     * A stream name that matches a stream name pattern is mapped to
+     * the pattern's stream config entry.
+     * The returned stream config entries are copies and may be modified.
      * @param streamNames
      * @return
      */
     public ObjectNode getStreamConfigs(List<String> streamNames) {
-        // If any of the desired streams are not cached, try to fetch them now and cache them.
+        EventStreamConfigSnapshot snapshot = getSnapshot(streamNames);
+
+        // Return copies of only desired stream configs.
+        ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+        for (String streamName : streamNames) {
+            EventStreamConfigSnapshot.Entry entry = snapshot.resolve(streamName);
+            if (entry != null) {
+                streamConfigs.set(streamName, entry.config.deepCopy());
+            }
+        }
+        return streamConfigs;
+    }
+
+    /**
+     * Returns a snapshot that has all of the desired stream names cached, if they exist.
+     * If any of the desired streams are not cached, they are fetched now
+     * and a new snapshot including them is cached.  Streams that were recently
+     * fetched but have no stream config are not fetched again.
+     * @param streamNames
+     * @return
+     */
+    EventStreamConfigSnapshot getSnapshot(List<String> streamNames) {
+        EventStreamConfigSnapshot snapshot = streamConfigsSnapshot.get();
+
         List<String> unfetchedStreams = streamNames.stream()
-            .filter(streamName -> !streamConfigsCache.has(streamName))
+            .filter(streamName -> snapshot.resolve(streamName) == null && !snapshot.isMissing(streamName))
             .collect(Collectors.toList());
+        if (unfetchedStreams.isEmpty()) {
+            return snapshot;
+        }
 
-        if (!unfetchedStreams.isEmpty()) {
-            ObjectNode fetchedStreamConfigs = eventStreamConfigLoader.load(unfetchedStreams);
-            streamConfigsCache.setAll(fetchedStreamConfigs);
+        // Fetch outside of the atomic update, which may be retried.  If the snapshot
+        // was replaced meanwhile, its stream configs are newer than those just fetched.
+        ObjectNode fetchedStreamConfigs = eventStreamConfigLoader.load(unfetchedStreams);
+        EventStreamConfigSnapshot mergedSnapshot = streamConfigsSnapshot.updateAndGet(
+            currentSnapshot -> currentSnapshot.mergeMissing(fetchedStreamConfigs)
+        );
+        // Remember the stream names without stream config, so they are not fetched again right away.
+        for (String streamName : unfetchedStreams) {
+            if (mergedSnapshot.resolve(streamName) == null) {
+                mergedSnapshot.markMissing(streamName);
+            }
+        }
+        return mergedSnapshot;
+    }
+
+    /**
+     * Returns the cached stream config entry for streamName, fetching it if it is not cached.
+     * Returns null if there is no stream config for streamName.
+     * @param streamName
+     * @return
+     */
+    EventStreamConfigSnapshot.Entry getEntry(String streamName) {
+        EventStreamConfigSnapshot.Entry entry = streamConfigsSnapshot.get().resolve(streamName);
+        if (entry != null) {
+            return entry;
         }
+        return getSnapshot(Collections.singletonList(streamName)).resolve(streamName);
+    }
 
-        // Return only desired stream configs.
-        return streamConfigsCache.deepCopy().retain(streamNames);
+    /**
+     * Like getStreamConfigs, but the returned stream config entries are
+     * the shared cached ones.  Only for reading.
+     * @param streamNames
+     * @return
+     */
+    private ObjectNode getStreamConfigsView(List<String> streamNames) {
+        EventStreamConfigSnapshot snapshot = getSnapshot(streamNames);
+        ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+        for (String streamName : streamNames) {
+            EventStreamConfigSnapshot.Entry entry = snapshot.resolve(streamName);
+            if (entry != null) {
+                streamConfigs.set(streamName, entry.config);
+            }
+        }
+        return streamConfigs;
     }
 
     /**
@@ -163,16 +405,32 @@ public class EventStreamConfig {
      * If either this streamName does not have a stream config entry, or
      * the stream config entry does not have setting, this returns null.
      *
+     * The returned JsonNode is a copy that the caller may modify.
+     * Use getSettingView to avoid copying.
+     *
      * @param streamName
      * @param settingName
      * @return
      */
     public JsonNode getSetting(String streamName, String settingName) {
-        JsonNode streamConfigEntry = getStreamConfig(streamName).get(streamName);
-        if (streamConfigEntry == null) {
+        JsonNode setting = getSettingView(streamName, settingName);
+        return setting == null ? null : setting.deepCopy();
+    }
+
+    /**
+     * Like getSetting, but returns the JsonNode cached in this EventStreamConfig
+     * instead of a copy.  It is shared with all other callers and must not be modified.
+     *
+     * @param streamName
+     * @param settingName
+     * @return
+     */
+    public JsonNode getSettingView(String streamName, String settingName) {
+        EventStreamConfigSnapshot.Entry entry = getEntry(streamName);
+        if (entry == null) {
             return null;
         } else {
-            return streamConfigEntry.get(settingName);
+            return entry.config.get(settingName);
         }
     }
 
@@ -192,7 +450,7 @@ public class EventStreamConfig {
      * @return
      */
     public String getSettingAsString(String streamName, String settingName) {
-        JsonNode settingNode = getSetting(streamName, settingName);
+        JsonNode settingNode = getSettingView(streamName, settingName);
         if (settingNode == null) {
             return null;
         } else {
@@ -242,7 +500,7 @@ public class EventStreamConfig {
      * @return
      */
     public List<JsonNode> collectSettings(List<String> streamNames, String settingName) {
-        return objectNodeCollectValues(getStreamConfigs(streamNames), settingName);
+        return objectNodeCollectValues(getStreamConfigsView(streamNames), settingName);
     }
 
     /**
@@ -271,7 +529,7 @@ public class EventStreamConfig {
      * @return
      */
     public List<JsonNode> collectAllCachedSettings(String settingName) {
-        return objectNodeCollectValues(streamConfigsCache, settingName);
+        return objectNodeCollectValues(streamConfigsSnapshot.get().streamConfigs, settingName);
     }
 
     /**
@@ -294,7 +552,8 @@ public class EventStreamConfig {
      * @return
      */
     public String getSchemaTitle(String streamName) {
-        return getSettingAsString(streamName, SCHEMA_TITLE_SETTING);
+        EventStreamConfigSnapshot.Entry entry = getEntry(streamName);
+        return entry == null ? null : entry.schemaTitle;
     }
 
     /**
@@ -311,7 +570,18 @@ public class EventStreamConfig {
      * @return
      */
     public List<String> getTopics(String streamName) {
-        return collectSettingAsString(streamName, TOPICS_SETTING);
+        return new ArrayList<>(getTopicsView(streamName));
+    }
+
+    /**
+     * Like getTopics, but returns the List cached in this EventStreamConfig
+     * instead of a copy.  The returned List cannot be modified.
+     * @param streamName
+     * @return
+     */
+    public List<String> getTopicsView(String streamName) {
+        EventStreamConfigSnapshot.Entry entry = getEntry(streamName);
+        return entry == null ? Collections.emptyList() : entry.topics;
     }
 
     /**
@@ -323,13 +593,41 @@ public class EventStreamConfig {
         return collectSettingsAsString(streamNames, TOPICS_SETTING);
     }
 
+    /**
+     * Gets the name of the cached stream whose stream config lists topic in its topics.
+     * Topics in stream configs may be regex patterns like stream names; if no
+     * stream config lists the exact topic, the first one with a matching
+     * topic pattern is used.  In that case the returned name may be a stream name pattern.
+     *
+     * Only cached stream configs are searched, since topics cannot be fetched by name.
+     * Returns null if no cached stream config has topic.
+     * @param topic
+     * @return
+     */
+    public String getStreamNameByTopic(String topic) {
+        EventStreamConfigSnapshot.Entry entry = streamConfigsSnapshot.get().resolveTopic(topic);
+        return entry == null ? null : entry.streamName;
+    }
+
+    /**
+     * Gets the schema title of the cached stream whose stream config has topic.
+     * See getStreamNameByTopic.
+     * @param topic
+     * @return
+     */
+    public String getSchemaTitleByTopic(String topic) {
+        EventStreamConfigSnapshot.Entry entry = streamConfigsSnapshot.get().resolveTopic(topic);
+        return entry == null ? null : entry.schemaTitle;
+    }
+
     /**
      * Gets the destination_event_service name for the specified stream.
      * @param streamName
      * @return
      */
     public String getEventServiceName(String streamName) {
-        return getSettingAsString(streamName, EVENT_SERVICE_SETTING);
+        EventStreamConfigSnapshot.Entry entry = getEntry(streamName);
+        return entry == null ? null : entry.eventServiceName;
     }
 
     /**
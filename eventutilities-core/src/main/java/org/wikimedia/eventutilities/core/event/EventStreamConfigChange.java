@@ -0,0 +1,100 @@
+package org.wikimedia.eventutilities.core.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes how the cached stream configs of an EventStreamConfig changed
+ * when they were reloaded.  Stream names are listed in stream config order.
+ *
+ * Stream names may be stream name patterns like /^mediawiki\.job\..+/.
+ */
+public class EventStreamConfigChange {
+
+    protected final List<String> addedStreamNames;
+    protected final List<String> removedStreamNames;
+    protected final List<String> changedStreamNames;
+
+    /**
+     * @param addedStreamNames
+     * @param removedStreamNames
+     * @param changedStreamNames
+     */
+    public EventStreamConfigChange(
+        List<String> addedStreamNames,
+        List<String> removedStreamNames,
+        List<String> changedStreamNames
+    ) {
+        this.addedStreamNames = Collections.unmodifiableList(addedStreamNames);
+        this.removedStreamNames = Collections.unmodifiableList(removedStreamNames);
+        this.changedStreamNames = Collections.unmodifiableList(changedStreamNames);
+    }
+
+    /**
+     * Compares the stream configs of two snapshots.  Unchanged stream configs
+     * usually share their JsonNode, so only stream configs that were actually
+     * reloaded are compared by value.
+     * @param previous
+     * @param next
+     * @return
+     */
+    static EventStreamConfigChange between(EventStreamConfigSnapshot previous, EventStreamConfigSnapshot next) {
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, EventStreamConfigSnapshot.Entry> entry : next.entries.entrySet()) {
+            EventStreamConfigSnapshot.Entry previousEntry = previous.get(entry.getKey());
+            if (previousEntry == null) {
+                added.add(entry.getKey());
+            } else if (
+                previousEntry.config != entry.getValue().config &&
+                !previousEntry.config.equals(entry.getValue().config)
+            ) {
+                changed.add(entry.getKey());
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String streamName : previous.entries.keySet()) {
+            if (!next.has(streamName)) {
+                removed.add(streamName);
+            }
+        }
+        return new EventStreamConfigChange(added, removed, changed);
+    }
+
+    /**
+     * @return names of streams that have a stream config now, but did not before.
+     */
+    public List<String> getAddedStreamNames() {
+        return addedStreamNames;
+    }
+
+    /**
+     * @return names of streams that had a stream config before, but do not now.
+     */
+    public List<String> getRemovedStreamNames() {
+        return removedStreamNames;
+    }
+
+    /**
+     * @return names of streams whose stream config changed.
+     */
+    public List<String> getChangedStreamNames() {
+        return changedStreamNames;
+    }
+
+    /**
+     * @return true if no stream was added, removed or changed.
+     */
+    public boolean isEmpty() {
+        return addedStreamNames.isEmpty() && removedStreamNames.isEmpty() && changedStreamNames.isEmpty();
+    }
+
+    public String toString() {
+        return "EventStreamConfigChange(added=" + addedStreamNames +
+            ", removed=" + removedStreamNames +
+            ", changed=" + changedStreamNames + ")";
+    }
+}
@@ -0,0 +1,420 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable set of stream configs, indexed by stream name.
+ *
+ * A snapshot is built once per load of stream configs.  Loading more stream configs
+ * builds a new snapshot that shares the unchanged entries with the old one.
+ * Nothing in a snapshot, including the stream config JsonNodes, may be modified
+ * after it is built, so it can be read from any thread without copying or locking.
+ *
+ * Stream names that look like /regex/ are stream name patterns.  Their regexes are
+ * compiled once per snapshot.  A stream name is resolved to the entry with exactly
+ * that name if there is one, otherwise to the first pattern entry (in stream config order)
+ * whose regex matches it.  Pattern matches are memoized.
+ *
+ * Topics are indexed the same way, so that the stream config entry of a topic
+ * can be found without scanning all stream configs.
+ *
+ * Adding stream configs for new stream names (see mergeMissing) appends them to
+ * a copy of the indexes and reuses the compiled patterns and memoized matches.
+ * Stream names that were looked up but have no stream config are remembered
+ * for MISSING_NAMES_TTL_MILLIS, so they are not fetched again on every lookup.
+ */
+final class EventStreamConfigSnapshot {
+
+    /**
+     * At most this many pattern matches are memoized per snapshot, for each of
+     * stream names and topics.
+     */
+    static final int PATTERN_MATCHES_MAX_SIZE = 10_000;
+
+    /**
+     * At most this many stream names without stream config are remembered.
+     */
+    static final int MISSING_NAMES_MAX_SIZE = 10_000;
+
+    /**
+     * How long a stream name without stream config is remembered.
+     */
+    static final long MISSING_NAMES_TTL_MILLIS = 60_000L;
+
+    /**
+     * A single stream config entry, with frequently used settings pre-extracted.
+     */
+    static final class Entry {
+        final String streamName;
+        final JsonNode config;
+        final List<String> topics;
+        final String schemaTitle;
+        final String eventServiceName;
+
+        Entry(String streamName, JsonNode config) {
+            this.streamName = streamName;
+            this.config = config;
+            this.topics = config.isObject() ?
+                Collections.unmodifiableList(EventStreamConfig.jsonNodesAsText(
+                    EventStreamConfig.objectNodeCollectValues((ObjectNode) config, EventStreamConfig.TOPICS_SETTING)
+                )) :
+                Collections.emptyList();
+            this.schemaTitle = settingAsText(config, EventStreamConfig.SCHEMA_TITLE_SETTING);
+            this.eventServiceName = settingAsText(config, EventStreamConfig.EVENT_SERVICE_SETTING);
+        }
+
+        private static String settingAsText(JsonNode config, String settingName) {
+            JsonNode settingNode = config.get(settingName);
+            return settingNode == null ? null : settingNode.asText();
+        }
+    }
+
+    /**
+     * All stream configs, mapping stream name (or stream pattern regex) to stream config.
+     */
+    final ObjectNode streamConfigs;
+
+    /**
+     * Stream config entries by stream name, in the same order as streamConfigs.
+     */
+    final Map<String, Entry> entries;
+
+    /**
+     * Compiled stream name patterns and their entries, in the same order as streamConfigs.
+     */
+    final List<Map.Entry<Pattern, Entry>> patternEntries;
+
+    /**
+     * Memoized pattern entries for stream names that matched one of the patternEntries.
+     * Shared with snapshots that only append entries to this one, since appended
+     * patterns cannot take precedence over a memoized match.
+     */
+    private final ConcurrentHashMap<String, Entry> patternMatches;
+
+    /**
+     * Stream config entries by topic.  If more than one stream config lists a topic,
+     * the first one in stream config order is used.
+     */
+    final Map<String, Entry> topicEntries;
+
+    /**
+     * Compiled topic patterns and their entries, in the same order as streamConfigs.
+     */
+    final List<Map.Entry<Pattern, Entry>> topicPatternEntries;
+
+    /**
+     * Memoized pattern entries for topics that matched one of the topicPatternEntries.
+     * Shared like patternMatches.
+     */
+    private final ConcurrentHashMap<String, Entry> topicPatternMatches;
+
+    /**
+     * Stream names without stream config, mapped to when they should be looked up again.
+     * Shared with snapshots that only append entries to this one.
+     */
+    private final ConcurrentHashMap<String, Long> missingNames;
+
+    private static final Logger log = LogManager.getLogger(EventStreamConfigSnapshot.class.getName());
+
+    /**
+     * Builds a snapshot of streamConfigs.  streamConfigs must not be modified afterwards.
+     * @param streamConfigs
+     */
+    EventStreamConfigSnapshot(ObjectNode streamConfigs) {
+        this(streamConfigs, Collections.emptyMap());
+    }
+
+    /**
+     * Builds a snapshot of streamConfigs, reusing existing entries
+     * whose stream config JsonNode is unchanged.
+     * @param streamConfigs
+     * @param existingEntries
+     */
+    private EventStreamConfigSnapshot(ObjectNode streamConfigs, Map<String, Entry> existingEntries) {
+        this.streamConfigs = streamConfigs;
+
+        Map<String, Entry> index = new LinkedHashMap<>(streamConfigs.size() * 2);
+        List<Map.Entry<Pattern, Entry>> patternIndex = new ArrayList<>();
+        Map<String, Entry> topicIndex = new HashMap<>(streamConfigs.size() * 4);
+        List<Map.Entry<Pattern, Entry>> topicPatternIndex = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = streamConfigs.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            Entry entry = existingEntries.get(field.getKey());
+            if (entry == null || entry.config != field.getValue()) {
+                entry = new Entry(field.getKey(), field.getValue());
+            }
+            addEntry(entry, index, patternIndex, topicIndex, topicPatternIndex);
+        }
+        this.entries = Collections.unmodifiableMap(index);
+        this.patternEntries = Collections.unmodifiableList(patternIndex);
+        this.topicEntries = Collections.unmodifiableMap(topicIndex);
+        this.topicPatternEntries = Collections.unmodifiableList(topicPatternIndex);
+        this.patternMatches = new ConcurrentHashMap<>();
+        this.topicPatternMatches = new ConcurrentHashMap<>();
+        this.missingNames = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Builds a snapshot of base plus newStreamConfigs, none of whose stream names
+     * may be in base.  The indexes of base are copied and the new entries appended,
+     * without compiling the patterns of base again.
+     * @param base
+     * @param newStreamConfigs
+     */
+    private EventStreamConfigSnapshot(EventStreamConfigSnapshot base, ObjectNode newStreamConfigs) {
+        // Shallow copy, the stream config JsonNodes themselves are shared.
+        ObjectNode mergedStreamConfigs = JsonNodeFactory.instance.objectNode();
+        mergedStreamConfigs.setAll(base.streamConfigs);
+        mergedStreamConfigs.setAll(newStreamConfigs);
+        this.streamConfigs = mergedStreamConfigs;
+
+        Map<String, Entry> index = new LinkedHashMap<>(base.entries);
+        List<Map.Entry<Pattern, Entry>> patternIndex = new ArrayList<>(base.patternEntries);
+        Map<String, Entry> topicIndex = new HashMap<>(base.topicEntries);
+        List<Map.Entry<Pattern, Entry>> topicPatternIndex = new ArrayList<>(base.topicPatternEntries);
+        Iterator<Map.Entry<String, JsonNode>> fields = newStreamConfigs.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            addEntry(new Entry(field.getKey(), field.getValue()), index, patternIndex, topicIndex, topicPatternIndex);
+        }
+        this.entries = Collections.unmodifiableMap(index);
+        this.patternEntries = Collections.unmodifiableList(patternIndex);
+        this.topicEntries = Collections.unmodifiableMap(topicIndex);
+        this.topicPatternEntries = Collections.unmodifiableList(topicPatternIndex);
+        this.patternMatches = base.patternMatches;
+        this.topicPatternMatches = base.topicPatternMatches;
+        this.missingNames = base.missingNames;
+    }
+
+    /**
+     * Adds entry to the end of the given indexes, compiling its stream name and topic patterns.
+     * @param entry
+     * @param index
+     * @param patternIndex
+     * @param topicIndex
+     * @param topicPatternIndex
+     */
+    private static void addEntry(
+        Entry entry,
+        Map<String, Entry> index,
+        List<Map.Entry<Pattern, Entry>> patternIndex,
+        Map<String, Entry> topicIndex,
+        List<Map.Entry<Pattern, Entry>> topicPatternIndex
+    ) {
+        index.put(entry.streamName, entry);
+
+        Pattern pattern = compilePattern(entry.streamName);
+        if (pattern != null) {
+            patternIndex.add(new AbstractMap.SimpleImmutableEntry<>(pattern, entry));
+        }
+
+        for (String topic : entry.topics) {
+            Pattern topicPattern = compilePattern(topic);
+            if (topicPattern != null) {
+                topicPatternIndex.add(new AbstractMap.SimpleImmutableEntry<>(topicPattern, entry));
+            } else {
+                topicIndex.putIfAbsent(topic, entry);
+            }
+        }
+    }
+
+    /**
+     * Returns a new snapshot with the stream configs in this one plus those in
+     * moreStreamConfigs.  Stream configs in moreStreamConfigs replace those with
+     * the same stream name.  This snapshot is not changed, and moreStreamConfigs
+     * must not be modified afterwards.
+     * @param moreStreamConfigs
+     * @return
+     */
+    EventStreamConfigSnapshot merge(ObjectNode moreStreamConfigs) {
+        if (moreStreamConfigs.size() == 0) {
+            return this;
+        }
+        // Shallow copy, the stream config JsonNodes themselves are shared.
+        ObjectNode mergedStreamConfigs = JsonNodeFactory.instance.objectNode();
+        mergedStreamConfigs.setAll(streamConfigs);
+        mergedStreamConfigs.setAll(moreStreamConfigs);
+        return new EventStreamConfigSnapshot(mergedStreamConfigs, entries);
+    }
+
+    /**
+     * Returns a snapshot of newStreamConfigs, reusing the entries of this snapshot
+     * whose stream config JsonNode is unchanged.  If newStreamConfigs is the very
+     * ObjectNode this snapshot was built from, e.g. because the loader got a 304
+     * Not Modified response, this snapshot is returned as is.
+     * newStreamConfigs must not be modified afterwards.
+     * @param newStreamConfigs
+     * @return
+     */
+    EventStreamConfigSnapshot replace(ObjectNode newStreamConfigs) {
+        if (newStreamConfigs == streamConfigs) {
+            return this;
+        }
+        return new EventStreamConfigSnapshot(newStreamConfigs, entries);
+    }
+
+    /**
+     * Like merge, but only adds the stream configs in moreStreamConfigs whose
+     * stream names are not in this snapshot yet.  Returns this snapshot if there
+     * is nothing to add.  The new stream configs are appended incrementally,
+     * see EventStreamConfigSnapshot(EventStreamConfigSnapshot, ObjectNode).
+     * @param moreStreamConfigs
+     * @return
+     */
+    EventStreamConfigSnapshot mergeMissing(ObjectNode moreStreamConfigs) {
+        ObjectNode missingStreamConfigs = null;
+        Iterator<Map.Entry<String, JsonNode>> fields = moreStreamConfigs.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (!has(field.getKey())) {
+                if (missingStreamConfigs == null) {
+                    missingStreamConfigs = JsonNodeFactory.instance.objectNode();
+                }
+                missingStreamConfigs.set(field.getKey(), field.getValue());
+            }
+        }
+        return missingStreamConfigs == null ? this : new EventStreamConfigSnapshot(this, missingStreamConfigs);
+    }
+
+    /**
+     * Remembers that streamName has no stream config, so that isMissing returns
+     * true for it for MISSING_NAMES_TTL_MILLIS.  Nothing is remembered once
+     * MISSING_NAMES_MAX_SIZE stream names are.
+     * @param streamName
+     */
+    void markMissing(String streamName) {
+        if (missingNames.size() < MISSING_NAMES_MAX_SIZE) {
+            missingNames.put(streamName, System.currentTimeMillis() + MISSING_NAMES_TTL_MILLIS);
+        }
+    }
+
+    /**
+     * @param streamName
+     * @return true if streamName was recently found to have no stream config.
+     */
+    boolean isMissing(String streamName) {
+        Long expiresAtMillis = missingNames.get(streamName);
+        if (expiresAtMillis == null) {
+            return false;
+        }
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            missingNames.remove(streamName, expiresAtMillis);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the entry for streamName, or null if there is none.
+     * Stream name patterns are not matched, see resolve.
+     * @param streamName
+     * @return
+     */
+    Entry get(String streamName) {
+        return entries.get(streamName);
+    }
+
+    /**
+     * Returns the entry named streamName, or else the first pattern entry
+     * that matches streamName, or null if there is none.
+     * @param streamName
+     * @return
+     */
+    Entry resolve(String streamName) {
+        Entry entry = entries.get(streamName);
+        if (entry != null) {
+            return entry;
+        }
+        return matchFirst(patternEntries, patternMatches, streamName);
+    }
+
+    /**
+     * Returns the entry that lists topic in its topics, or else the first entry
+     * with a topic pattern that matches topic, or null if there is none.
+     * @param topic
+     * @return
+     */
+    Entry resolveTopic(String topic) {
+        Entry entry = topicEntries.get(topic);
+        if (entry != null) {
+            return entry;
+        }
+        return matchFirst(topicPatternEntries, topicPatternMatches, topic);
+    }
+
+    /**
+     * Returns the entry of the first of patternEntries that matches name,
+     * memoizing the result in matches.
+     * @param patternEntries
+     * @param matches
+     * @param name
+     * @return
+     */
+    private static Entry matchFirst(
+        List<Map.Entry<Pattern, Entry>> patternEntries,
+        ConcurrentHashMap<String, Entry> matches,
+        String name
+    ) {
+        if (patternEntries.isEmpty()) {
+            return null;
+        }
+
+        Entry entry = matches.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        for (Map.Entry<Pattern, Entry> patternEntry : patternEntries) {
+            if (patternEntry.getKey().matcher(name).find()) {
+                entry = patternEntry.getValue();
+                if (matches.size() < PATTERN_MATCHES_MAX_SIZE) {
+                    matches.put(name, entry);
+                }
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * If name looks like /regex/, returns the compiled regex, otherwise null.
+     * Invalid regexes are logged and treated as plain names.
+     * @param name
+     * @return
+     */
+    static Pattern compilePattern(String name) {
+        if (name.length() < 2 || !name.startsWith("/") || !name.endsWith("/")) {
+            return null;
+        }
+        try {
+            return Pattern.compile(name.substring(1, name.length() - 1));
+        } catch (PatternSyntaxException e) {
+            log.warn("Stream config name " + name + " is not a valid regex, treating it as a plain name.", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param streamName
+     * @return true if this snapshot has an entry for streamName.
+     */
+    boolean has(String streamName) {
+        return entries.containsKey(streamName);
+    }
+}
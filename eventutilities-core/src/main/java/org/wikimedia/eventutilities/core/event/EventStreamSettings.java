@@ -0,0 +1,141 @@
+package org.wikimedia.eventutilities.core.event;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The frequently used stream config settings of a single stream, resolved once.
+ *
+ * An EventStreamSettings is immutable.  EventStream keeps one per stream and only
+ * builds a new one when the stream's config in EventStreamConfig changes, so reading
+ * its settings does not look up, copy or walk any JSON.
+ *
+ * The schema URI is only built on first use, so that a malformed schema_title
+ * fails schemaUri lookups without failing lookups of the other settings.
+ */
+public final class EventStreamSettings {
+
+    private final String streamName;
+    private final List<String> topics;
+    private final String eventServiceName;
+    private final URI eventServiceUri;
+    private final Map<String, URI> datacenterEventServiceUris;
+    private final Function<String, URI> schemaUriBuilder;
+
+    /**
+     * Built from the entry's schema title by schemaUriBuilder on first use.
+     */
+    volatile URI schemaUri;
+
+    /**
+     * The snapshot and entry these settings were resolved from.
+     * Used by EventStream to tell whether the settings are still current.
+     */
+    final EventStreamConfigSnapshot snapshot;
+    final EventStreamConfigSnapshot.Entry entry;
+
+    /**
+     * @param streamName
+     * @param snapshot
+     * @param entry
+     *  The stream config entry of streamName in snapshot, or null if it has none.
+     * @param eventServiceToUriMap
+     *  Maps event service name, and event service name + "-" + datacenter, to a service URI.
+     * @param schemaUriBuilder
+     *  Builds the schema URI from the stream's schema_title.
+     */
+    EventStreamSettings(
+        String streamName,
+        EventStreamConfigSnapshot snapshot,
+        EventStreamConfigSnapshot.Entry entry,
+        Map<String, URI> eventServiceToUriMap,
+        Function<String, URI> schemaUriBuilder
+    ) {
+        this.streamName = streamName;
+        this.snapshot = snapshot;
+        this.entry = entry;
+        this.topics = entry == null ? Collections.emptyList() : entry.topics;
+        this.eventServiceName = entry == null ? null : entry.eventServiceName;
+        this.eventServiceUri = eventServiceToUriMap.get(eventServiceName);
+
+        Map<String, URI> datacenterUris = new HashMap<>();
+        if (eventServiceName != null) {
+            String datacenterPrefix = eventServiceName + "-";
+            for (Map.Entry<String, URI> eventServiceUri : eventServiceToUriMap.entrySet()) {
+                if (eventServiceUri.getKey().startsWith(datacenterPrefix)) {
+                    datacenterUris.put(
+                        eventServiceUri.getKey().substring(datacenterPrefix.length()),
+                        eventServiceUri.getValue()
+                    );
+                }
+            }
+        }
+        this.datacenterEventServiceUris = Collections.unmodifiableMap(datacenterUris);
+        this.schemaUriBuilder = schemaUriBuilder;
+    }
+
+    /**
+     * @return the name of the stream these settings are for.
+     */
+    public String getStreamName() {
+        return streamName;
+    }
+
+    /**
+     * @return the Kafka topics that compose the stream.  The List cannot be modified.
+     */
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    /**
+     * @return the stream's destination_event_service name, or null if it has none.
+     */
+    public String getEventServiceName() {
+        return eventServiceName;
+    }
+
+    /**
+     * @return the (discovery) URI of the stream's event service, or null if it is not known.
+     */
+    public URI getEventServiceUri() {
+        return eventServiceUri;
+    }
+
+    /**
+     * @param datacenter
+     * @return the datacenter specific URI of the stream's event service, or null if it is not known.
+     */
+    public URI getEventServiceUri(String datacenter) {
+        return datacenterEventServiceUris.get(datacenter);
+    }
+
+    /**
+     * @return the datacenter specific URIs of the stream's event service, by datacenter.
+     */
+    public Map<String, URI> getDatacenterEventServiceUris() {
+        return datacenterEventServiceUris;
+    }
+
+    /**
+     * @return the latest relative schema URI of the stream, e.g. /my/cool/schema/latest
+     */
+    public URI getSchemaUri() {
+        URI uri = schemaUri;
+        if (uri == null) {
+            uri = schemaUriBuilder.apply(entry == null ? null : entry.schemaTitle);
+            schemaUri = uri;
+        }
+        return uri;
+    }
+
+    public String toString() {
+        return "EventStreamSettings(streamName=" + streamName +
+            ", topics=" + topics +
+            ", eventServiceName=" + eventServiceName + ")";
+    }
+}
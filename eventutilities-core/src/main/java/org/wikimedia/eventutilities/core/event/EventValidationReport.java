@@ -0,0 +1,106 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jsonschema.core.report.LogLevel;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of validating an event against its JSONSchema.
+ *
+ * Each error is a JsonNode describing one validation failure, e.g.
+ *
+ *   {
+ *     "level": "error",
+ *     "schema": {"loadingURI": "#", "pointer": "/properties/meta"},
+ *     "instance": {"pointer": "/meta"},
+ *     "keyword": "required",
+ *     "message": "object has missing required properties ([\"stream\"])",
+ *     ...
+ *   }
+ */
+public class EventValidationReport {
+
+    protected final boolean success;
+    protected final URI schemaUri;
+    protected final List<JsonNode> errors;
+
+    /**
+     * @param success
+     * @param schemaUri
+     *  The schema URI of the validated event.
+     * @param errors
+     */
+    public EventValidationReport(boolean success, URI schemaUri, List<JsonNode> errors) {
+        this.success = success;
+        this.schemaUri = schemaUri;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Builds an EventValidationReport out of a JSONSchema validator ProcessingReport,
+     * keeping only its error (and worse) messages.
+     * @param schemaUri
+     * @param processingReport
+     * @return
+     */
+    public static EventValidationReport fromProcessingReport(URI schemaUri, ProcessingReport processingReport) {
+        List<JsonNode> errors = new ArrayList<>();
+        for (ProcessingMessage message : processingReport) {
+            if (message.getLogLevel().compareTo(LogLevel.ERROR) >= 0) {
+                errors.add(message.asJson());
+            }
+        }
+        return new EventValidationReport(processingReport.isSuccess(), schemaUri, errors);
+    }
+
+    /**
+     * Builds a failed EventValidationReport for an event that could not be validated
+     * at all, e.g. because it could not be parsed or its schema could not be loaded.
+     * The report has a single fatal error with the exception's message.
+     * @param schemaUri
+     *  The schema URI of the event, or null if it is not known.
+     * @param exception
+     * @return
+     */
+    public static EventValidationReport fromException(URI schemaUri, Exception exception) {
+        ObjectNode error = JsonNodeFactory.instance.objectNode();
+        error.put("level", LogLevel.FATAL.toString());
+        error.put("message", String.valueOf(exception.getMessage()));
+        error.put("exception", exception.getClass().getName());
+        return new EventValidationReport(false, schemaUri, Collections.singletonList(error));
+    }
+
+    /**
+     * @return true if the event is valid.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * @return the schema URI of the validated event.
+     */
+    public URI getSchemaUri() {
+        return schemaUri;
+    }
+
+    /**
+     * @return the validation errors, empty if the event is valid.
+     */
+    public List<JsonNode> getErrors() {
+        return errors;
+    }
+
+    public String toString() {
+        return "EventValidationReport(success=" + success + ", schemaUri=" + schemaUri +
+            ", errors=" + errors + ")";
+    }
+}
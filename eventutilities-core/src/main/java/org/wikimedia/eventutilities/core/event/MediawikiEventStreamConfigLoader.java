@@ -1,29 +1,130 @@
 package org.wikimedia.eventutilities.core.event;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.wikimedia.eventutilities.core.json.JsonLoader;
 
 import java.net.URI;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * EventStreamConfigLoader implementation that loads stream config
  * from a remote Mediawiki EventStreamConfig extension API endpoint.
+ *
+ * Requests for many streams are split into batches whose URIs are at most
+ * maxUriLength long.  Batches are fetched concurrently and their results
+ * merged into a single ObjectNode.
+ *
+ * If JsonLoader conditional requests are enabled and every batch of a request
+ * is not modified, the same ObjectNode as for the previous identical request
+ * is returned, so that EventStreamConfig can tell nothing changed.
+ * Only the most recent batched request is remembered for this.
  */
 public class MediawikiEventStreamConfigLoader extends EventStreamConfigLoader {
 
+    /**
+     * Default maximum length of a single API request URI.  Many servers and proxies
+     * reject request lines longer than 8K; this leaves plenty of room for headers.
+     */
+    public static final int MAX_URI_LENGTH_DEFAULT = 4000;
+
+    /**
+     * Number of threads in the default pool used to fetch batches concurrently.
+     */
+    protected static final int FETCH_THREADS_DEFAULT = 4;
+
     /**
      * Base Mediawiki API endpoint, e.g https://meta.wikimedia.org/w/api.php
      */
     protected String mediawikiApiEndpoint;
 
+    /**
+     * Maximum length of a single API request URI.
+     */
+    protected int maxUriLength;
+
+    /**
+     * Executor used to fetch batches concurrently.  If null, the shared
+     * default fetch pool is used.
+     */
+    protected Executor fetchExecutor;
+
+    /**
+     * Lazily created pool of daemon threads shared by all instances
+     * that were not given their own fetchExecutor.
+     */
+    private static volatile ExecutorService defaultFetchExecutor;
+
+    /**
+     * The batch URIs, batch responses and merged result of the most recent batched load.
+     */
+    private volatile BatchedLoad lastBatchedLoad;
+
+    /**
+     * A batched load, remembered to return the same merged ObjectNode
+     * if all of its batch responses are unchanged.
+     */
+    private static final class BatchedLoad {
+        final List<URI> uris;
+        final List<JsonNode> responses;
+        final ObjectNode streamConfigs;
+
+        BatchedLoad(List<URI> uris, List<JsonNode> responses, ObjectNode streamConfigs) {
+            this.uris = uris;
+            this.responses = responses;
+            this.streamConfigs = streamConfigs;
+        }
+
+        /**
+         * @param otherUris
+         * @param otherResponses
+         * @return true if otherResponses are the very same JsonNodes for the same URIs.
+         */
+        boolean isSame(List<URI> otherUris, List<JsonNode> otherResponses) {
+            if (!uris.equals(otherUris)) {
+                return false;
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                if (responses.get(i) != otherResponses.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Constructs a MediawikiEventStreamConfigLoader that loads from mediawikiApiEndpoint.
      * @param mediawikiApiEndpoint
      */
     public MediawikiEventStreamConfigLoader(String mediawikiApiEndpoint) {
+        this(mediawikiApiEndpoint, MAX_URI_LENGTH_DEFAULT, null);
+    }
+
+    /**
+     * Constructs a MediawikiEventStreamConfigLoader that loads from mediawikiApiEndpoint.
+     * @param mediawikiApiEndpoint
+     * @param maxUriLength
+     *  Requests are split into batches with URIs at most this long.
+     * @param fetchExecutor
+     *  Used to fetch batches concurrently.  If null, a shared default pool is used.
+     */
+    public MediawikiEventStreamConfigLoader(String mediawikiApiEndpoint, int maxUriLength, Executor fetchExecutor) {
         this.mediawikiApiEndpoint = mediawikiApiEndpoint;
+        this.maxUriLength = maxUriLength;
+        this.fetchExecutor = fetchExecutor;
     }
 
     /**
@@ -32,8 +133,81 @@ public class MediawikiEventStreamConfigLoader extends EventStreamConfigLoader {
      * @return
      */
     public ObjectNode load(List<String> streamNames) {
-        URI uri = makeMediawikiEventStreamConfigApiUri(mediawikiApiEndpoint, streamNames);
-        return (ObjectNode) JsonLoader.get(uri);
+        List<URI> uris = makeMediawikiEventStreamConfigApiUris(mediawikiApiEndpoint, streamNames, maxUriLength);
+        if (uris.size() == 1) {
+            return (ObjectNode) JsonLoader.get(uris.get(0));
+        }
+
+        Executor executor = fetchExecutor != null ? fetchExecutor : getDefaultFetchExecutor();
+        List<CompletableFuture<JsonNode>> batches = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            batches.add(CompletableFuture.supplyAsync(() -> JsonLoader.get(uri), executor));
+        }
+
+        List<JsonNode> responses = new ArrayList<>(batches.size());
+        try {
+            for (CompletableFuture<JsonNode> batch : batches) {
+                responses.add(batch.join());
+            }
+        } catch (CompletionException e) {
+            batches.forEach(batch -> batch.cancel(false));
+            throw e.getCause() instanceof RuntimeException ?
+                (RuntimeException) e.getCause() : e;
+        }
+
+        BatchedLoad previousLoad = lastBatchedLoad;
+        if (previousLoad != null && previousLoad.isSame(uris, responses)) {
+            return previousLoad.streamConfigs;
+        }
+
+        ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+        for (JsonNode response : responses) {
+            mergeResponse(streamConfigs, (ObjectNode) response);
+        }
+        lastBatchedLoad = new BatchedLoad(uris, responses, streamConfigs);
+        return streamConfigs;
+    }
+
+    /**
+     * Merges the API response of a single batch into streamConfigs.
+     * Object fields present in both (e.g. a top level "streams" object) are merged
+     * into a new object, so that neither response is modified.
+     * @param streamConfigs
+     * @param response
+     */
+    protected static void mergeResponse(ObjectNode streamConfigs, ObjectNode response) {
+        Iterator<Map.Entry<String, JsonNode>> fields = response.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode existing = streamConfigs.get(field.getKey());
+            if (existing != null && existing.isObject() && field.getValue().isObject()) {
+                ObjectNode merged = JsonNodeFactory.instance.objectNode();
+                merged.setAll((ObjectNode) existing);
+                merged.setAll((ObjectNode) field.getValue());
+                streamConfigs.set(field.getKey(), merged);
+            } else {
+                streamConfigs.set(field.getKey(), field.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the shared default fetch pool, creating it if needed.
+     * @return
+     */
+    private static ExecutorService getDefaultFetchExecutor() {
+        if (defaultFetchExecutor == null) {
+            synchronized (MediawikiEventStreamConfigLoader.class) {
+                if (defaultFetchExecutor == null) {
+                    defaultFetchExecutor = Executors.newFixedThreadPool(FETCH_THREADS_DEFAULT, runnable -> {
+                        Thread thread = new Thread(runnable, "MediawikiEventStreamConfigLoader-fetch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return defaultFetchExecutor;
     }
 
     /**
@@ -45,38 +219,74 @@ public class MediawikiEventStreamConfigLoader extends EventStreamConfigLoader {
      * @return
      */
     public static URI makeMediawikiEventStreamConfigApiUri(String mediawikiApiEndpoint, List<String> streamNames) {
-        final String mediawikiStreamsParamFormat = "streams=%s";
-        final String mediawikiStreamsDelimiter;
-
-        try {
-            // We need to support streams param delimiters like "|", which is what
-            // MW API expects, but URI.create will throw a
-            // java.lang.IllegalArgumentException: Illegal character
-            // if we don't URL encode "|" first.
-            mediawikiStreamsDelimiter = URLEncoder.encode(
-                "|", "UTF-8"
-            );
-        } catch (java.io.UnsupportedEncodingException e) {
-            // This should never happen.
-            throw new RuntimeException(
-                "Could not URL encode '|'. " + e.getMessage()
-            );
-        }
+        return makeMediawikiEventStreamConfigApiUris(mediawikiApiEndpoint, streamNames, Integer.MAX_VALUE).get(0);
+    }
 
+    /**
+     * Builds Mediawiki EventStreamConfig extension API URIs for the given streams,
+     * splitting streamNames into as few batches as possible with URIs no longer than maxUriLength.
+     * A stream name that does not fit in maxUriLength by itself gets its own URI anyway.
+     * If streamNames is empty, this returns a single URI requesting all streams from the API.
+     *
+     * @param mediawikiApiEndpoint
+     * @param streamNames
+     * @param maxUriLength
+     * @return
+     */
+    public static List<URI> makeMediawikiEventStreamConfigApiUris(
+        String mediawikiApiEndpoint,
+        List<String> streamNames,
+        int maxUriLength
+    ) {
         String mediawikiEventStreamConfigUri = mediawikiApiEndpoint + "?format=json&action=streamconfigs&all_settings=true";
 
         // If no specified stream names, try to get them all.
         if (streamNames.isEmpty()) {
-            return URI.create(mediawikiEventStreamConfigUri);
-        } else {
-            // else format the URI to request specific stream names.
-            String streamsParam = String.format(
-                mediawikiStreamsParamFormat,
-                String.join(mediawikiStreamsDelimiter, streamNames)
-            );
+            return Collections.singletonList(URI.create(mediawikiEventStreamConfigUri));
+        }
+
+        // else format the URIs to request specific stream names.
+        // We need to support streams param delimiters like "|", which is what
+        // MW API expects, but URI.create will throw a
+        // java.lang.IllegalArgumentException: Illegal character
+        // if we don't URL encode "|" (and any other special characters in stream names) first.
+        final String mediawikiStreamsDelimiter = urlEncode("|");
+        final String mediawikiStreamsParamPrefix = mediawikiEventStreamConfigUri + "&streams=";
 
-            return URI.create(
-                mediawikiEventStreamConfigUri + streamsParam
+        List<URI> uris = new ArrayList<>();
+        StringBuilder uri = new StringBuilder(mediawikiStreamsParamPrefix);
+        boolean batchIsEmpty = true;
+        for (String streamName : new LinkedHashSet<>(streamNames)) {
+            String encodedStreamName = urlEncode(streamName);
+            if (!batchIsEmpty &&
+                uri.length() + mediawikiStreamsDelimiter.length() + encodedStreamName.length() > maxUriLength
+            ) {
+                uris.add(URI.create(uri.toString()));
+                uri.setLength(mediawikiStreamsParamPrefix.length());
+                batchIsEmpty = true;
+            }
+            if (!batchIsEmpty) {
+                uri.append(mediawikiStreamsDelimiter);
+            }
+            uri.append(encodedStreamName);
+            batchIsEmpty = false;
+        }
+        uris.add(URI.create(uri.toString()));
+        return uris;
+    }
+
+    /**
+     * URL encodes s as UTF-8.
+     * @param s
+     * @return
+     */
+    private static String urlEncode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            // This should never happen.
+            throw new RuntimeException(
+                "Could not URL encode '" + s + "'. " + e.getMessage()
             );
         }
     }
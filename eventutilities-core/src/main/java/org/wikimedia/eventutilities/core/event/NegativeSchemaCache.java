@@ -0,0 +1,97 @@
+package org.wikimedia.eventutilities.core.event;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers schema URIs that recently failed to load because there was no schema
+ * at them, so that EventSchemaLoader can skip them cheaply for a short time.
+ *
+ * Each entry is a fully qualified schema URI, i.e. a base URI + a relative schema URI.
+ * Entries expire ttlMillis after they were added.  Lookups of remembered
+ * not-found URIs are counted as hits, all other lookups as misses.
+ */
+public class NegativeSchemaCache {
+
+    /**
+     * If more than this many entries are cached, expired entries are purged.
+     */
+    protected static final int PURGE_THRESHOLD = 10_000;
+
+    protected final long ttlMillis;
+
+    /**
+     * Maps not found schema URIs to the time in millis at which they expire.
+     */
+    protected final ConcurrentHashMap<URI, Long> expirations = new ConcurrentHashMap<>();
+
+    protected final LongAdder hits = new LongAdder();
+    protected final LongAdder misses = new LongAdder();
+
+    /**
+     * @param ttlMillis
+     *  How long a schema URI is remembered as not found.
+     */
+    public NegativeSchemaCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns true if schemaUri recently failed to load because it was not found.
+     * @param schemaUri
+     * @return
+     */
+    public boolean isNotFound(URI schemaUri) {
+        Long expiration = expirations.get(schemaUri);
+        if (expiration != null) {
+            if (expiration > System.currentTimeMillis()) {
+                hits.increment();
+                return true;
+            }
+            expirations.remove(schemaUri, expiration);
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Remembers schemaUri as not found for ttlMillis.
+     * @param schemaUri
+     */
+    public void putNotFound(URI schemaUri) {
+        long now = System.currentTimeMillis();
+        if (expirations.size() >= PURGE_THRESHOLD) {
+            expirations.values().removeIf(expiration -> expiration <= now);
+        }
+        expirations.put(schemaUri, now + ttlMillis);
+    }
+
+    /**
+     * Forgets all not found schema URIs.
+     */
+    public void clear() {
+        expirations.clear();
+    }
+
+    /**
+     * Number of lookups that found a remembered not found schema URI.
+     * @return
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups that did not find a remembered not found schema URI.
+     * @return
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public String toString() {
+        return "NegativeSchemaCache(ttlMillis=" + ttlMillis + ", hits=" + hitCount() +
+            ", misses=" + missCount() + ")";
+    }
+}
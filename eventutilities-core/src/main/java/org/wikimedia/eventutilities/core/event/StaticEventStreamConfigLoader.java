@@ -1,27 +1,297 @@
 package org.wikimedia.eventutilities.core.event;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.wikimedia.eventutilities.core.json.JsonLoader;
+import org.wikimedia.eventutilities.core.json.JsonLoadingException;
 
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Loads stream config once from a static URI.
+ *
+ * The loaded stream configs are memoized and safely published to all threads.
+ * The stream configs of requested stream names are memoized too, so that the
+ * same ObjectNode is returned for the same request until the file changes.
+ * The returned ObjectNodes are shared and must not be modified.
+ *
+ * If the URI is a file: URI, the file can be watched for changes with startWatching().
+ * It is only parsed again if its content changed.
+ * E.g. to apply local stream config edits without a restart:
+ *
+ * StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader("file:///etc/stream_configs.yaml");
+ * EventStreamConfig eventStreamConfig = new EventStreamConfig(loader, eventServiceToUriMap);
+ * loader.startWatching(eventStreamConfig::reset);
  */
 public class StaticEventStreamConfigLoader  extends EventStreamConfigLoader {
+
+    /**
+     * At most this many requested stream name lists have their stream configs memoized.
+     */
+    protected static final int REQUESTED_STREAM_CONFIGS_MAX_SIZE = 1_000;
+
     protected URI streamConfigUri;
-    protected ObjectNode staticStreamConfigs = null;
+    protected volatile ObjectNode staticStreamConfigs = null;
+
+    /**
+     * Memoized stream configs of requested stream names, by requested stream names.
+     * Each is only used while it was filtered from the current staticStreamConfigs.
+     */
+    private final ConcurrentHashMap<List<String>, RequestedStreamConfigs> requestedStreamConfigs =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Modification time, size and SHA-256 hash of the loaded file, if streamConfigUri is a file: URI.
+     * Only accessed while synchronized on this.
+     */
+    private FileTime loadedLastModified;
+    private long loadedSize = -1;
+    private String loadedContentHash;
+
+    /**
+     * Watches the directory of the stream config file, if started.
+     */
+    private WatchService watchService;
+
+    private static final Logger log = LogManager.getLogger(StaticEventStreamConfigLoader.class.getName());
+
+    /**
+     * The stream configs of some requested stream names, and the stream configs they were filtered from.
+     */
+    private static final class RequestedStreamConfigs {
+        final ObjectNode allStreamConfigs;
+        final ObjectNode streamConfigs;
+
+        RequestedStreamConfigs(ObjectNode allStreamConfigs, ObjectNode streamConfigs) {
+            this.allStreamConfigs = allStreamConfigs;
+            this.streamConfigs = streamConfigs;
+        }
+    }
 
     public StaticEventStreamConfigLoader(String streamConfigUri) {
         this.streamConfigUri = URI.create(streamConfigUri);
     }
 
+    /**
+     * Returns the stream configs for streamNames, or all stream configs if streamNames is empty.
+     * Returns the same ObjectNode for the same streamNames until the stream configs are reloaded.
+     * @param streamNames
+     * @return
+     */
     public ObjectNode load(List<String> streamNames) {
-        if (staticStreamConfigs == null) {
-            staticStreamConfigs = (ObjectNode) JsonLoader.get(streamConfigUri);
+        ObjectNode streamConfigs = getStaticStreamConfigs();
+        if (streamNames.isEmpty()) {
+            return streamConfigs;
         }
-        return staticStreamConfigs;
+
+        RequestedStreamConfigs requested = requestedStreamConfigs.get(streamNames);
+        if (requested != null && requested.allStreamConfigs == streamConfigs) {
+            return requested.streamConfigs;
+        }
+
+        ObjectNode filteredStreamConfigs = JsonNodeFactory.instance.objectNode();
+        for (String streamName : streamNames) {
+            JsonNode streamConfig = streamConfigs.get(streamName);
+            if (streamConfig != null) {
+                filteredStreamConfigs.set(streamName, streamConfig);
+            }
+        }
+        if (requested != null || requestedStreamConfigs.size() < REQUESTED_STREAM_CONFIGS_MAX_SIZE) {
+            requestedStreamConfigs.put(
+                new ArrayList<>(streamNames),
+                new RequestedStreamConfigs(streamConfigs, filteredStreamConfigs)
+            );
+        }
+        return filteredStreamConfigs;
+    }
+
+    /**
+     * Returns the memoized stream configs, loading them on first use.
+     * @return
+     */
+    private ObjectNode getStaticStreamConfigs() {
+        ObjectNode streamConfigs = staticStreamConfigs;
+        if (streamConfigs == null) {
+            synchronized (this) {
+                streamConfigs = staticStreamConfigs;
+                if (streamConfigs == null) {
+                    if (isFile()) {
+                        reloadIfChanged();
+                        streamConfigs = staticStreamConfigs;
+                    } else {
+                        streamConfigs = (ObjectNode) JsonLoader.get(streamConfigUri);
+                        staticStreamConfigs = streamConfigs;
+                    }
+                }
+            }
+        }
+        return streamConfigs;
+    }
+
+    /**
+     * Reads the stream config file again if its modification time or size changed,
+     * and parses it if its content changed too.
+     * Only works for file: URIs.
+     * @return true if new stream configs were loaded.
+     */
+    public boolean reloadIfChanged() {
+        return reloadIfChanged(false);
+    }
+
+    /**
+     * Reads the stream config file again if alwaysRead, or if its modification time
+     * or size changed, and parses it if its content changed.  The modification time,
+     * size and content hash are only remembered once the content was parsed successfully
+     * (or found unchanged), so a half written file is read again on the next call.
+     * @param alwaysRead
+     *  If true, the content is hashed even if the modification time and size look unchanged,
+     *  e.g. because of consecutive writes within the file system's timestamp granularity.
+     * @return true if new stream configs were loaded.
+     */
+    private synchronized boolean reloadIfChanged(boolean alwaysRead) {
+        if (!isFile()) {
+            throw new IllegalStateException("Cannot reload non file: stream config URI " + streamConfigUri);
+        }
+
+        Path path = Paths.get(streamConfigUri);
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(path);
+            long size = Files.size(path);
+            if (
+                !alwaysRead && staticStreamConfigs != null &&
+                lastModified.equals(loadedLastModified) && size == loadedSize
+            ) {
+                return false;
+            }
+
+            byte[] content = Files.readAllBytes(path);
+            String contentHash = JsonLoader.sha256(content);
+            if (staticStreamConfigs != null && contentHash.equals(loadedContentHash)) {
+                loadedLastModified = lastModified;
+                loadedSize = size;
+                return false;
+            }
+
+            staticStreamConfigs = (ObjectNode) JsonLoader.getInstance().parse(content);
+            requestedStreamConfigs.clear();
+            loadedLastModified = lastModified;
+            loadedSize = size;
+            loadedContentHash = contentHash;
+            return true;
+        } catch (IOException | JsonLoadingException | ClassCastException e) {
+            throw new RuntimeException(
+                "Failed loading JSON from " + streamConfigUri + ". " + e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Starts watching the stream config file in a background thread.  Whenever it
+     * changes, the stream configs are reloaded and onChange is run.  Failures to
+     * reload are logged and the previous stream configs are kept.
+     * Only works for file: URIs.
+     *
+     * @param onChange
+     *  Run after new stream configs were loaded, e.g. eventStreamConfig::reset.
+     * @throws IOException
+     *  if the file's directory cannot be watched.
+     */
+    public synchronized void startWatching(Runnable onChange) throws IOException {
+        if (!isFile()) {
+            throw new IllegalStateException("Cannot watch non file: stream config URI " + streamConfigUri);
+        }
+        stopWatching();
+
+        Path path = Paths.get(streamConfigUri).toAbsolutePath();
+        WatchService newWatchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(
+            newWatchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY
+        );
+        watchService = newWatchService;
+
+        Thread thread = new Thread(
+            () -> watch(newWatchService, path.getFileName(), onChange),
+            "StaticEventStreamConfigLoader-watch"
+        );
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the stream config file, if started.
+     */
+    public synchronized void stopWatching() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Failed closing WatchService for " + streamConfigUri, e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Reloads on every event about fileName from watchService, until it is closed.
+     * @param watchService
+     * @param fileName
+     * @param onChange
+     */
+    private void watch(WatchService watchService, Path fileName, Runnable onChange) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean fileChanged = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                        fileChanged = true;
+                    }
+                }
+                key.reset();
+
+                if (fileChanged) {
+                    try {
+                        if (reloadIfChanged(true)) {
+                            log.info("Reloaded changed stream configs from " + streamConfigUri);
+                            onChange.run();
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Failed reloading stream configs from " + streamConfigUri +
+                            ", keeping previous stream configs.", e);
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Watching was stopped.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return true if streamConfigUri is a file: URI.
+     */
+    private boolean isFile() {
+        return "file".equalsIgnoreCase(streamConfigUri.getScheme());
     }
 
     public String toString() {
@@ -0,0 +1,177 @@
+package org.wikimedia.eventutilities.core.http;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contains static methods to construct HTTP clients that pool and reuse connections.
+ * Both blocking CloseableHttpClients and non-blocking CloseableHttpAsyncClients
+ * can be created.
+ *
+ * Connections are kept alive and reused, also after 4xx responses like the
+ * routine 404s of schema lookups, but are not reused after a 5xx response.
+ * A blocking client retries a request once if the server closed a kept alive
+ * connection without responding.
+ * A client returned from here should be shared for the lifetime of the application
+ * and closed on shutdown. Closing the client closes its connection pool and stops
+ * its idle connection evictor thread.
+ */
+public class HttpClientFactory {
+
+    /**
+     * Default maximum number of pooled connections across all routes.
+     */
+    public static final int MAX_CONNECTIONS_TOTAL_DEFAULT = 64;
+
+    /**
+     * Default maximum number of pooled connections to a single route (host:port).
+     */
+    public static final int MAX_CONNECTIONS_PER_ROUTE_DEFAULT = 8;
+
+    /**
+     * Default time a connection is kept alive if the server does not
+     * send a Keep-Alive timeout header.
+     */
+    public static final long KEEP_ALIVE_MILLIS_DEFAULT = 60_000L;
+
+    /**
+     * Default time after which idle pooled connections are evicted.
+     */
+    public static final long MAX_IDLE_MILLIS_DEFAULT = 30_000L;
+
+    /**
+     * Creates a pooling CloseableHttpClient using the default pool settings.
+     * @return
+     */
+    public static CloseableHttpClient createPooledHttpClient() {
+        return createPooledHttpClient(
+            MAX_CONNECTIONS_TOTAL_DEFAULT,
+            MAX_CONNECTIONS_PER_ROUTE_DEFAULT,
+            KEEP_ALIVE_MILLIS_DEFAULT,
+            MAX_IDLE_MILLIS_DEFAULT
+        );
+    }
+
+    /**
+     * Creates a pooling CloseableHttpClient.
+     *
+     * @param maxConnectionsTotal
+     *  Maximum number of pooled connections across all routes.
+     *
+     * @param maxConnectionsPerRoute
+     *  Maximum number of pooled connections to a single route.
+     *
+     * @param keepAliveMillis
+     *  How long to keep a connection alive when the server does not
+     *  say how long it will keep it open.  A server provided Keep-Alive timeout
+     *  is always respected.
+     *
+     * @param maxIdleMillis
+     *  Pooled connections that have been idle for longer than this will
+     *  be closed by a background evictor thread.
+     *
+     * @return
+     */
+    public static CloseableHttpClient createPooledHttpClient(
+        int maxConnectionsTotal,
+        int maxConnectionsPerRoute,
+        long keepAliveMillis,
+        long maxIdleMillis
+    ) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setConnectionReuseStrategy(HttpClientFactory::keepAlive)
+            // Servers may close a kept alive connection without telling us, e.g. after
+            // an error response.  The next request on it then fails without any response,
+            // so retry it once on a new connection, like HttpURLConnection does.
+            .setRetryHandler((exception, executionCount, context) ->
+                executionCount <= 1 && exception instanceof NoHttpResponseException
+            )
+            .setKeepAliveStrategy((response, context) -> {
+                long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+                return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMillis;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * Creates and starts a non-blocking CloseableHttpAsyncClient using the default pool settings.
+     * @return
+     */
+    public static CloseableHttpAsyncClient createPooledHttpAsyncClient() {
+        return createPooledHttpAsyncClient(
+            MAX_CONNECTIONS_TOTAL_DEFAULT,
+            MAX_CONNECTIONS_PER_ROUTE_DEFAULT,
+            KEEP_ALIVE_MILLIS_DEFAULT
+        );
+    }
+
+    /**
+     * Creates and starts a non-blocking CloseableHttpAsyncClient.
+     * All requests are multiplexed over a small number of NIO I/O dispatch threads,
+     * so many requests can be in flight without a thread for each of them.
+     *
+     * @param maxConnectionsTotal
+     *  Maximum number of pooled connections across all routes.
+     *
+     * @param maxConnectionsPerRoute
+     *  Maximum number of pooled connections to a single route.
+     *
+     * @param keepAliveMillis
+     *  How long to keep a connection alive when the server does not
+     *  say how long it will keep it open.
+     *
+     * @return
+     */
+    public static CloseableHttpAsyncClient createPooledHttpAsyncClient(
+        int maxConnectionsTotal,
+        int maxConnectionsPerRoute,
+        long keepAliveMillis
+    ) {
+        CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+            .setMaxConnTotal(maxConnectionsTotal)
+            .setMaxConnPerRoute(maxConnectionsPerRoute)
+            .setConnectionReuseStrategy(HttpClientFactory::keepAlive)
+            .setKeepAliveStrategy((response, context) -> {
+                long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+                return serverKeepAlive > 0 ? serverKeepAlive : keepAliveMillis;
+            })
+            .build();
+        client.start();
+        return client;
+    }
+
+    /**
+     * Connection reuse strategy of the pooled clients.  Connections are reused as
+     * DefaultConnectionReuseStrategy decides, which honors Connection: close and
+     * responses whose end cannot be determined, except after 5xx responses:
+     * servers often close the connection after a server error without telling us,
+     * and reusing it would fail the next request with a NoHttpResponseException.
+     * @param response
+     * @param context
+     * @return
+     */
+    private static boolean keepAlive(HttpResponse response, HttpContext context) {
+        return response.getStatusLine().getStatusCode() < 500 &&
+            DefaultConnectionReuseStrategy.INSTANCE.keepAlive(response, context);
+    }
+
+}
@@ -3,11 +3,22 @@ package org.wikimedia.eventutilities.core.http;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.IntFunction;
 
 import org.wikimedia.eventutilities.core.json.JsonLoader;
@@ -15,15 +26,90 @@ import org.wikimedia.eventutilities.core.json.JsonLoader;
 
 /**
  * Contains static methods that simplify making HTTP POST requests.
+ *
+ * Unless a CloseableHttpClient is passed in, requests are made using a shared
+ * pooling client created by HttpClientFactory, so that connections
+ * (and their TCP and TLS handshakes) are reused between requests.
+ * Call closeDefaultHttpClient() on shutdown to release its pooled connections.
+ *
+ * The *Async methods do not block the calling thread.  They return a
+ * CompletableFuture that is completed with the HttpResult once the response
+ * has been read.  Like the blocking methods, local exceptions are
+ * represented in the HttpResult, so the future is never completed exceptionally.
  */
 public class HttpRequest {
 
     /**
-     * POSTs a String to a url.
+     * Shared pooling client used when no client is given.  Lazily created.
+     */
+    private static CloseableHttpClient defaultHttpClient;
+
+    /**
+     * Shared non-blocking pooling client used when no async client is given.  Lazily created.
+     */
+    private static CloseableHttpAsyncClient defaultHttpAsyncClient;
+
+    /**
+     * Returns the shared pooling CloseableHttpClient, creating it if needed.
+     * @return
+     */
+    public static synchronized CloseableHttpClient getDefaultHttpClient() {
+        if (defaultHttpClient == null) {
+            defaultHttpClient = HttpClientFactory.createPooledHttpClient();
+        }
+        return defaultHttpClient;
+    }
+
+    /**
+     * Closes the shared pooling CloseableHttpClient and its connection pool.
+     * If the default client is used again afterwards, a new one will be created.
+     * @throws IOException
+     */
+    public static synchronized void closeDefaultHttpClient() throws IOException {
+        if (defaultHttpClient != null) {
+            try {
+                defaultHttpClient.close();
+            } finally {
+                defaultHttpClient = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the shared non-blocking CloseableHttpAsyncClient, creating
+     * and starting it if needed.
+     * @return
+     */
+    public static synchronized CloseableHttpAsyncClient getDefaultHttpAsyncClient() {
+        if (defaultHttpAsyncClient == null || !defaultHttpAsyncClient.isRunning()) {
+            defaultHttpAsyncClient = HttpClientFactory.createPooledHttpAsyncClient();
+        }
+        return defaultHttpAsyncClient;
+    }
+
+    /**
+     * Closes the shared CloseableHttpAsyncClient and its I/O dispatch threads.
+     * If the default async client is used again afterwards, a new one will be created.
+     * @throws IOException
+     */
+    public static synchronized void closeDefaultHttpAsyncClient() throws IOException {
+        if (defaultHttpAsyncClient != null) {
+            try {
+                defaultHttpAsyncClient.close();
+            } finally {
+                defaultHttpAsyncClient = null;
+            }
+        }
+    }
+
+    /**
+     * POSTs a String to a url using the given client.
+     * The client is not closed, so that its pooled connections can be reused.
      *
      * If there is a local exception during POSTing, the HttpResult success will be false
      * and the Exception message will be in message.
      *
+     * @param client
      * @param url
      * @param requestBody
      * @param contentType,
@@ -31,6 +117,7 @@ public class HttpRequest {
      * @return
      */
     public static HttpResult post(
+        CloseableHttpClient client,
         String url,
         String requestBody,
         ContentType contentType,
@@ -40,10 +127,12 @@ public class HttpRequest {
         HttpEntity stringEntity = new StringEntity(requestBody, contentType);
         httpPost.setEntity(stringEntity);
 
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
+        try {
             return client.execute(
                 httpPost,
                 // Create a custom response handler to return an HttpResult.
+                // The response handler consumes the entity, which releases
+                // the connection back to the pool.
                 response -> new HttpResult(response, isSuccess)
             );
         } catch (Exception e) {
@@ -51,6 +140,27 @@ public class HttpRequest {
         }
     }
 
+    /**
+     * POSTs a String to a url using the shared default client.
+     *
+     * If there is a local exception during POSTing, the HttpResult success will be false
+     * and the Exception message will be in message.
+     *
+     * @param url
+     * @param requestBody
+     * @param contentType,
+     * @param isSuccess
+     * @return
+     */
+    public static HttpResult post(
+        String url,
+        String requestBody,
+        ContentType contentType,
+        IntFunction<Boolean> isSuccess
+    ) {
+        return post(getDefaultHttpClient(), url, requestBody, contentType, isSuccess);
+    }
+
     /**
      * POSTs a request body to url considering any 2xx response a successful POST.
      *
@@ -73,20 +183,38 @@ public class HttpRequest {
     }
 
     /**
-     * POSTs a JsonNode as a serialized JSON string to a url.
+     * POSTs a JsonNode as a serialized JSON string to a url using the given client.
      *
+     * @param client
      * @param url
      * @param jsonNode,
      * @param isSuccess
      * @return
      */
     public static HttpResult postJson(
+        CloseableHttpClient client,
         String url,
         JsonNode jsonNode,
         IntFunction<Boolean> isSuccess
     ) throws JsonProcessingException {
         String requestBody = JsonLoader.getInstance().asString(jsonNode);
-        return post(url, requestBody, ContentType.APPLICATION_JSON, isSuccess);
+        return post(client, url, requestBody, ContentType.APPLICATION_JSON, isSuccess);
+    }
+
+    /**
+     * POSTs a JsonNode as a serialized JSON string to a url.
+     *
+     * @param url
+     * @param jsonNode,
+     * @param isSuccess
+     * @return
+     */
+    public static HttpResult postJson(
+        String url,
+        JsonNode jsonNode,
+        IntFunction<Boolean> isSuccess
+    ) throws JsonProcessingException {
+        return postJson(getDefaultHttpClient(), url, jsonNode, isSuccess);
     }
 
     /**
@@ -108,4 +236,193 @@ public class HttpRequest {
             statusCode -> statusCode >= 200 && statusCode < 300
         );
     }
+
+    /**
+     * Asynchronously POSTs a String to a url using the given non-blocking client.
+     *
+     * If timeoutMillis is greater than 0, it is used as the timeout for leasing
+     * a pooled connection, for connecting, and for socket inactivity while waiting
+     * for the response.  A timeout results in a failed HttpResult.
+     *
+     * Cancelling the returned future aborts the HTTP request.
+     *
+     * @param client
+     * @param url
+     * @param requestBody
+     * @param contentType
+     * @param isSuccess
+     * @param timeoutMillis
+     * @return
+     */
+    public static CompletableFuture<HttpResult> postAsync(
+        CloseableHttpAsyncClient client,
+        String url,
+        String requestBody,
+        ContentType contentType,
+        IntFunction<Boolean> isSuccess,
+        int timeoutMillis
+    ) {
+        CompletableFuture<HttpResult> resultFuture = new CompletableFuture<>();
+
+        Future<HttpResponse> responseFuture;
+        try {
+            HttpPost httpPost = new HttpPost(url);
+            httpPost.setEntity(new StringEntity(requestBody, contentType));
+            if (timeoutMillis > 0) {
+                httpPost.setConfig(RequestConfig.custom()
+                    .setConnectionRequestTimeout(timeoutMillis)
+                    .setConnectTimeout(timeoutMillis)
+                    .setSocketTimeout(timeoutMillis)
+                    .build()
+                );
+            }
+
+            responseFuture = client.execute(httpPost, new FutureCallback<HttpResponse>() {
+                public void completed(HttpResponse response) {
+                    try {
+                        resultFuture.complete(new HttpResult(response, isSuccess));
+                    } catch (Exception e) {
+                        resultFuture.complete(new HttpResult(e));
+                    }
+                }
+
+                public void failed(Exception e) {
+                    resultFuture.complete(new HttpResult(e));
+                }
+
+                public void cancelled() {
+                    resultFuture.complete(new HttpResult(
+                        new CancellationException("POST to " + url + " was cancelled")
+                    ));
+                }
+            });
+        } catch (Exception e) {
+            resultFuture.complete(new HttpResult(e));
+            return resultFuture;
+        }
+
+        // If the caller cancels the result, abort the in flight request.
+        resultFuture.whenComplete((result, throwable) -> {
+            if (resultFuture.isCancelled()) {
+                responseFuture.cancel(true);
+            }
+        });
+
+        return resultFuture;
+    }
+
+    /**
+     * Asynchronously POSTs a String to a url using the shared default async client.
+     *
+     * @param url
+     * @param requestBody
+     * @param contentType
+     * @param isSuccess
+     * @param timeoutMillis
+     * @return
+     */
+    public static CompletableFuture<HttpResult> postAsync(
+        String url,
+        String requestBody,
+        ContentType contentType,
+        IntFunction<Boolean> isSuccess,
+        int timeoutMillis
+    ) {
+        return postAsync(
+            getDefaultHttpAsyncClient(), url, requestBody, contentType, isSuccess, timeoutMillis
+        );
+    }
+
+    /**
+     * Asynchronously POSTs a JsonNode as a serialized JSON string to a url
+     * using the given non-blocking client.
+     *
+     * @param client
+     * @param url
+     * @param jsonNode
+     * @param isSuccess
+     * @param timeoutMillis
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static CompletableFuture<HttpResult> postJsonAsync(
+        CloseableHttpAsyncClient client,
+        String url,
+        JsonNode jsonNode,
+        IntFunction<Boolean> isSuccess,
+        int timeoutMillis
+    ) throws JsonProcessingException {
+        String requestBody = JsonLoader.getInstance().asString(jsonNode);
+        return postAsync(
+            client, url, requestBody, ContentType.APPLICATION_JSON, isSuccess, timeoutMillis
+        );
+    }
+
+    /**
+     * Asynchronously POSTs a JsonNode as a serialized JSON string to a url
+     * using the shared default async client.
+     *
+     * @param url
+     * @param jsonNode
+     * @param isSuccess
+     * @param timeoutMillis
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static CompletableFuture<HttpResult> postJsonAsync(
+        String url,
+        JsonNode jsonNode,
+        IntFunction<Boolean> isSuccess,
+        int timeoutMillis
+    ) throws JsonProcessingException {
+        return postJsonAsync(getDefaultHttpAsyncClient(), url, jsonNode, isSuccess, timeoutMillis);
+    }
+
+    /**
+     * Asynchronously POSTs a JsonNode as a serialized JSON string to url
+     * considering any 2xx response a successful POST, without a timeout.
+     *
+     * @param url
+     * @param jsonNode
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static CompletableFuture<HttpResult> postJsonAsync(
+        String url,
+        JsonNode jsonNode
+    ) throws JsonProcessingException {
+        return postJsonAsync(
+            url,
+            jsonNode,
+            statusCode -> statusCode >= 200 && statusCode < 300,
+            0
+        );
+    }
+
+    /**
+     * Waits up to timeoutMillis for an HttpResult future returned by one of the *Async methods.
+     * If the future does not complete in time, it is cancelled (aborting the request)
+     * and a failed HttpResult caused by a TimeoutException is returned.
+     *
+     * @param resultFuture
+     * @param timeoutMillis
+     * @return
+     */
+    public static HttpResult awaitResult(CompletableFuture<HttpResult> resultFuture, long timeoutMillis) {
+        try {
+            return resultFuture.get(Math.max(timeoutMillis, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            resultFuture.cancel(true);
+            return new HttpResult(new TimeoutException(
+                "HTTP request did not complete within " + timeoutMillis + " ms"
+            ));
+        } catch (InterruptedException e) {
+            resultFuture.cancel(true);
+            Thread.currentThread().interrupt();
+            return new HttpResult(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            return new HttpResult(cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
 }
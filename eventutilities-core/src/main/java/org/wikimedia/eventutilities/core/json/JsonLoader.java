@@ -2,18 +2,50 @@ package org.wikimedia.eventutilities.core.json;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.JsonPointerBasedFilter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 
-import org.apache.commons.io.IOUtils;
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Loads and parses JSON or YAML data into JsonNodes.
+ *
+ * Conditional requests can be enabled with setConditionalRequests(true).
+ * The ETag and Last-Modified validators of every http(s) response are then kept
+ * along with its parsed JsonNode, and sent with the next request for the same URI.
+ * If the server responds with 304 Not Modified, the previously parsed JsonNode
+ * is returned as is, without downloading or parsing anything.  JsonNodes loaded
+ * this way are shared between loads and must not be modified.
+ */
 public class JsonLoader {
 
+    /**
+     * Default maximum number of URIs whose validators and parsed data are kept
+     * for conditional requests.
+     */
+    public static final int CONDITIONAL_CACHE_MAX_SIZE_DEFAULT = 1_000;
+
     static final JsonLoader instance = new JsonLoader();
 
     final YAMLFactory  yamlFactory  = new YAMLFactory();
@@ -23,6 +55,40 @@ public class JsonLoader {
     // This should be thread safe.
     final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * If true, http(s) URIs are loaded with conditional requests.
+     */
+    private volatile boolean conditionalRequests = false;
+
+    /**
+     * Validators and parsed data of the last response for each http(s) URI,
+     * used for conditional requests.
+     */
+    final Cache<URI, ConditionalEntry> conditionalEntries = Caffeine.newBuilder()
+        .maximumSize(CONDITIONAL_CACHE_MAX_SIZE_DEFAULT)
+        .executor(Runnable::run)
+        .build();
+
+    /**
+     * Number of conditional requests answered with 304 Not Modified.
+     */
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    /**
+     * The validators of a response and the JsonNode parsed from its body.
+     */
+    static final class ConditionalEntry {
+        final String eTag;
+        final String lastModified;
+        final JsonNode data;
+
+        ConditionalEntry(String eTag, String lastModified, JsonNode data) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.data = data;
+        }
+    }
+
     public JsonLoader() { }
 
     public static JsonLoader getInstance() {
@@ -56,6 +122,9 @@ public class JsonLoader {
      * @return the jsonschema at schemaURI.
      */
     public JsonNode load(URI uri) throws JsonLoadingException {
+        if (conditionalRequests && isHttp(uri)) {
+            return loadConditionally(uri);
+        }
 
         JsonParser parser;
         try {
@@ -65,14 +134,154 @@ public class JsonLoader {
             throw new JsonLoadingException("Failed reading JSON/YAML data from " + uri, e);
         }
 
+        // Closing the parser closes the underlying InputStream.
+        try (JsonParser p = parser) {
+            return this.parse(p);
+        }
+        catch (IOException e) {
+            throw new JsonLoadingException("Failed loading JSON/YAML data from " + uri, e);
+        }
+    }
+
+    /**
+     * Loads the data at the http(s) uri with a conditional request.  If the data has
+     * not changed since it was last loaded, the previously parsed JsonNode is returned.
+     * @param uri
+     * @return
+     */
+    private JsonNode loadConditionally(URI uri) throws JsonLoadingException {
+        ConditionalEntry entry = conditionalEntries.getIfPresent(uri);
+        HttpURLConnection connection = null;
         try {
-            return this.parse(parser);
+            connection = (HttpURLConnection) uri.toURL().openConnection();
+            if (entry != null) {
+                if (entry.eTag != null) {
+                    connection.setRequestProperty("If-None-Match", entry.eTag);
+                }
+                if (entry.lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+                }
+            }
+
+            if (entry != null && connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                notModifiedCount.increment();
+                return entry.data;
+            }
+
+            // Like openStream, getInputStream throws if the response is not successful.
+            JsonNode data;
+            try (
+                InputStream in = new BufferedInputStream(connection.getInputStream());
+                JsonParser parser = this.getParser(in)
+            ) {
+                data = this.parse(parser);
+            }
+
+            String eTag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            if (eTag != null || lastModified != null) {
+                conditionalEntries.put(uri, new ConditionalEntry(eTag, lastModified, data));
+            } else {
+                conditionalEntries.invalidate(uri);
+            }
+            return data;
         }
         catch (IOException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
             throw new JsonLoadingException("Failed loading JSON/YAML data from " + uri, e);
         }
     }
 
+    /**
+     * Enables or disables conditional requests for http(s) URIs.
+     * Disabling them forgets all kept validators and data.
+     * @param conditionalRequests
+     */
+    public void setConditionalRequests(boolean conditionalRequests) {
+        this.conditionalRequests = conditionalRequests;
+        if (!conditionalRequests) {
+            conditionalEntries.invalidateAll();
+        }
+    }
+
+    /**
+     * @return true if http(s) URIs are loaded with conditional requests.
+     */
+    public boolean isConditionalRequests() {
+        return conditionalRequests;
+    }
+
+    /**
+     * @return the number of conditional requests that were answered with 304 Not Modified.
+     */
+    public long getNotModifiedCount() {
+        return notModifiedCount.sum();
+    }
+
+    /**
+     * Returns true if e (or any of its causes) indicates that there is nothing at
+     * the URI being loaded, as opposed to e.g. a timeout or a parse error.
+     * Missing local files and HTTP 404 responses both surface as FileNotFoundException.
+     * @param e
+     * @return
+     */
+    public static boolean isNotFoundException(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileNotFoundException || cause instanceof NoSuchFileException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 of bytes.  Used to tell whether loaded
+     * content changed without keeping or comparing the content itself.
+     * @param bytes
+     * @return
+     */
+    public static String sha256(byte[] bytes) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // This should never happen, every JVM must support SHA-256.
+            throw new RuntimeException("SHA-256 is not available. " + e.getMessage());
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(bytes)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param uri
+     * @return true if uri is an http or https URI.
+     */
+    private static boolean isHttp(URI uri) {
+        return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    /**
+     * Parses JSON or YAML data read from an InputStream into a JsonNode.
+     * The data is parsed as it is read, without first buffering all of it.
+     * The InputStream is not closed.
+     *
+     * @param in
+     * @return
+     */
+    public JsonNode parse(InputStream in) throws JsonLoadingException {
+        try (JsonParser parser = this.getParser(in)) {
+            return this.parse(parser);
+        }
+        catch (IOException e) {
+            throw new JsonLoadingException("Failed parsing JSON/YAML data from InputStream", e);
+        }
+    }
+
 
     /**
      * Parses the JSON or YAML string into a JsonNode.
@@ -90,6 +299,88 @@ public class JsonLoader {
         }
     }
 
+    /**
+     * Parses UTF-8 encoded JSON or YAML bytes into a JsonNode,
+     * without first decoding them into a String.
+     * @param data UTF-8 encoded JSON or YAML to parse into a JsonNode.
+     * @return
+     */
+    public JsonNode parse(byte[] data) throws JsonLoadingException {
+        return this.parse(data, 0, data.length);
+    }
+
+    /**
+     * Parses length UTF-8 encoded JSON or YAML bytes starting at offset in data
+     * into a JsonNode.
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    public JsonNode parse(byte[] data, int offset, int length) throws JsonLoadingException {
+        try (JsonParser parser = this.getParser(data, offset, length)) {
+            return this.parse(parser);
+        }
+        catch (IOException e) {
+            throw new JsonLoadingException(
+                "Failed parsing JSON/YAML data from " + length + " bytes", e
+            );
+        }
+    }
+
+    /**
+     * Parses the remaining UTF-8 encoded JSON or YAML bytes in the ByteBuffer
+     * into a JsonNode.  The ByteBuffer's position is not changed.
+     * @param data
+     * @return
+     */
+    public JsonNode parse(ByteBuffer data) throws JsonLoadingException {
+        if (data.hasArray()) {
+            return this.parse(
+                data.array(), data.arrayOffset() + data.position(), data.remaining()
+            );
+        }
+        // Direct or read only buffers have no accessible array, read them as a stream.
+        return this.parse(new ByteBufferBackedInputStream(data.duplicate()));
+    }
+
+    /**
+     * Returns the text value at pointer in the JSON or YAML string, or null if there
+     * is no text value there.  Like parse(data).at(pointer).textValue(), but only
+     * scans tokens up to the value at pointer instead of building the whole tree.
+     * @param data
+     * @param pointer
+     * @return
+     */
+    public String extractText(String data, JsonPointer pointer) throws JsonLoadingException {
+        try {
+            return this.extractText(this.getParser(data), pointer);
+        }
+        catch (IOException e) {
+            throw new JsonLoadingException(
+                "Failed extracting " + pointer + " from JSON/YAML string '" + data + "'", e
+            );
+        }
+    }
+
+    /**
+     * Returns the text value at pointer in the UTF-8 encoded JSON or YAML bytes,
+     * or null if there is no text value there.
+     * @param data
+     * @param pointer
+     * @return
+     */
+    public String extractText(byte[] data, JsonPointer pointer) throws JsonLoadingException {
+        try {
+            return this.extractText(this.getParser(data, 0, data.length), pointer);
+        }
+        catch (IOException e) {
+            throw new JsonLoadingException(
+                "Failed extracting " + pointer + " from " + data.length + " bytes of JSON/YAML data", e
+            );
+        }
+    }
+
     /**
      * Convenience method to reuse our ObjectMapper to serialize a JsonNode
      * to a JSON String.
@@ -105,6 +396,22 @@ public class JsonLoader {
         return this.objectMapper.readTree(parser);
     }
 
+    /**
+     * Reads tokens from parser until the value at pointer and returns its text.
+     * Subtrees that cannot contain pointer are skipped.  The parser is closed.
+     * @param parser
+     * @param pointer
+     * @return
+     */
+    private String extractText(JsonParser parser, JsonPointer pointer) throws IOException {
+        try (JsonParser filteredParser = new FilteringParserDelegate(
+            parser, new JsonPointerBasedFilter(pointer), false, false
+        )) {
+            JsonToken token = filteredParser.nextToken();
+            return token == JsonToken.VALUE_STRING ? filteredParser.getText() : null;
+        }
+    }
+
     /**
      * Gets either a YAMLParser or a JsonParser for String data
      * @param data
@@ -123,13 +430,76 @@ public class JsonLoader {
     }
 
     /**
-     * Gets either a YAMLParser or a JsonParser for the data at uri
+     * Gets either a YAMLParser or a JsonParser for UTF-8 encoded byte data
+     * @param data
+     * @param offset
+     * @param length
+     * @return
+     */
+    private JsonParser getParser(byte[] data, int offset, int length) throws IOException {
+        if (length <= 0) {
+            throw new EOFException("No JSON/YAML data to parse");
+        }
+
+        // If the first character is { or [, assume this is
+        // JSON data and use a JsonParser.  Otherwise assume
+        // YAML and use a YAMLParser.
+        byte firstByte = data[offset];
+        if (firstByte == '{' || firstByte == '[') {
+            return this.jsonFactory.createParser(data, offset, length);
+        } else {
+            return this.yamlFactory.createParser(data, offset, length);
+        }
+    }
+
+    /**
+     * Gets either a YAMLParser or a JsonParser that streams the data at uri.
+     * Closing the returned parser closes the connection to uri.
      * @param uri
      * @return
      */
     private JsonParser getParser(URI uri) throws IOException {
-        String content = IOUtils.toString(uri.toURL(), "UTF-8");
-        return this.getParser(content);
+        InputStream in = new BufferedInputStream(uri.toURL().openStream());
+        try {
+            JsonParser parser = this.getParser(in);
+            parser.enable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return parser;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets either a YAMLParser or a JsonParser that streams the data in the InputStream.
+     * Only the first byte is read ahead to decide which parser to use.
+     * The returned parser will not close the InputStream.
+     * @param in
+     * @return
+     */
+    private JsonParser getParser(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+
+        // If the first character is { or [, assume this is
+        // JSON data and use a JsonParser.  Otherwise assume
+        // YAML and use a YAMLParser.
+        in.mark(1);
+        int firstByte = in.read();
+        in.reset();
+        if (firstByte == -1) {
+            throw new EOFException("No JSON/YAML data to parse");
+        }
+
+        JsonParser parser;
+        if (firstByte == '{' || firstByte == '[') {
+            parser = this.jsonFactory.createParser(in);
+        } else {
+            parser = this.yamlFactory.createParser(in);
+        }
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return parser;
     }
 
 }
@@ -0,0 +1,226 @@
+package org.wikimedia.eventutilities.core.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Describes how a JsonSchemaLoader caches loaded schemas.
+ *
+ * By default the cache is unbounded and never evicts, which is the right thing
+ * for short lived jobs that see a handful of schemas.  Long running processes
+ * that see many schema versions can bound the cache by entry count or by weight,
+ * expire entries some time after they were written or last accessed, and be
+ * notified of evictions.
+ *
+ * Usage:
+ *
+ * JsonSchemaLoader schemaLoader = new JsonSchemaLoader(
+ *     JsonSchemaCachePolicy.newBuilder()
+ *         .maximumWeight(1_000_000)
+ *         .expireAfterAccess(1, TimeUnit.HOURS)
+ *         .evictionListener((uri, schema) -> log.info("Evicted " + uri))
+ * );
+ */
+public class JsonSchemaCachePolicy {
+
+    protected long maximumSize = -1;
+    protected long maximumWeight = -1;
+    protected ToIntFunction<JsonNode> weigher = JsonSchemaCachePolicy::nodeCount;
+    protected long expireAfterWriteNanos = -1;
+    protected long expireAfterAccessNanos = -1;
+    protected BiConsumer<URI, JsonNode> evictionListener = null;
+    protected Ticker ticker = null;
+
+    /**
+     * Returns a new policy to configure.  Until limits are added with
+     * its other methods, it describes an unbounded cache that never evicts.
+     * @return
+     */
+    public static JsonSchemaCachePolicy newBuilder() {
+        return new JsonSchemaCachePolicy();
+    }
+
+    /**
+     * Returns a new policy for an unbounded cache that never evicts.
+     * Same as newBuilder(), for when no limits are added.
+     * @return
+     */
+    public static JsonSchemaCachePolicy unbounded() {
+        return newBuilder();
+    }
+
+    /**
+     * Limits the cache to at most maximumSize schemas.
+     * Cannot be combined with maximumWeight.
+     * @param maximumSize
+     * @return this
+     * @throws IllegalStateException if maximumWeight was already set.
+     */
+    public JsonSchemaCachePolicy maximumSize(long maximumSize) {
+        if (maximumWeight >= 0) {
+            throw new IllegalStateException(
+                "Cannot set maximumSize, maximumWeight was already set to " + maximumWeight
+            );
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    /**
+     * Limits the cache to a total weight of maximumWeight, as estimated by
+     * the weigher.  By default a schema weighs as much as its number of JsonNodes.
+     * Cannot be combined with maximumSize.
+     * @param maximumWeight
+     * @return this
+     * @throws IllegalStateException if maximumSize was already set.
+     */
+    public JsonSchemaCachePolicy maximumWeight(long maximumWeight) {
+        if (maximumSize >= 0) {
+            throw new IllegalStateException(
+                "Cannot set maximumWeight, maximumSize was already set to " + maximumSize
+            );
+        }
+        this.maximumWeight = maximumWeight;
+        return this;
+    }
+
+    /**
+     * Sets the function used to estimate the weight of a schema
+     * when maximumWeight is set.
+     * @param weigher
+     * @return this
+     */
+    public JsonSchemaCachePolicy weigher(ToIntFunction<JsonNode> weigher) {
+        this.weigher = weigher;
+        return this;
+    }
+
+    /**
+     * Expires schemas this long after they were loaded.
+     * @param duration
+     * @param unit
+     * @return this
+     */
+    public JsonSchemaCachePolicy expireAfterWrite(long duration, TimeUnit unit) {
+        this.expireAfterWriteNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Expires schemas this long after they were last loaded or read.
+     * @param duration
+     * @param unit
+     * @return this
+     */
+    public JsonSchemaCachePolicy expireAfterAccess(long duration, TimeUnit unit) {
+        this.expireAfterAccessNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Calls evictionListener with the URI and schema of every entry that is
+     * evicted because of a size, weight or expiry limit.  Schemas that are
+     * explicitly replaced are not reported.
+     * @param evictionListener
+     * @return this
+     */
+    public JsonSchemaCachePolicy evictionListener(BiConsumer<URI, JsonNode> evictionListener) {
+        this.evictionListener = evictionListener;
+        return this;
+    }
+
+    /**
+     * Sets the time source that expiry is measured with.
+     * By default this is System.nanoTime; tests can pass a fake ticker.
+     * @param ticker
+     * @return this
+     */
+    public JsonSchemaCachePolicy ticker(Ticker ticker) {
+        this.ticker = ticker;
+        return this;
+    }
+
+    /**
+     * Returns true if this policy never evicts anything.
+     * @return
+     */
+    public boolean isUnbounded() {
+        return maximumSize < 0 && maximumWeight < 0 &&
+            expireAfterWriteNanos < 0 && expireAfterAccessNanos < 0;
+    }
+
+    /**
+     * Builds a new Caffeine cache that follows this policy,
+     * or returns null if this policy is unbounded.
+     * @return
+     */
+    Cache<URI, JsonNode> buildBoundedCache() {
+        if (isUnbounded()) {
+            return null;
+        }
+
+        // Run cache maintenance and listeners on the calling thread rather
+        // than in the common ForkJoinPool.
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder().executor(Runnable::run);
+        if (maximumSize >= 0) {
+            caffeine.maximumSize(maximumSize);
+        }
+        if (maximumWeight >= 0) {
+            ToIntFunction<JsonNode> schemaWeigher = weigher;
+            caffeine.maximumWeight(maximumWeight)
+                .weigher((URI uri, JsonNode schema) -> schemaWeigher.applyAsInt(schema));
+        }
+        if (expireAfterWriteNanos >= 0) {
+            caffeine.expireAfterWrite(expireAfterWriteNanos, TimeUnit.NANOSECONDS);
+        }
+        if (expireAfterAccessNanos >= 0) {
+            caffeine.expireAfterAccess(expireAfterAccessNanos, TimeUnit.NANOSECONDS);
+        }
+        if (ticker != null) {
+            caffeine.ticker(ticker);
+        }
+
+        if (evictionListener == null) {
+            return caffeine.build();
+        }
+
+        BiConsumer<URI, JsonNode> listener = evictionListener;
+        return caffeine
+            .removalListener((URI uri, JsonNode schema, RemovalCause cause) -> {
+                if (cause.wasEvicted()) {
+                    listener.accept(uri, schema);
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Estimates the weight of a JsonNode as the total number of nodes in its tree.
+     * @param jsonNode
+     * @return
+     */
+    public static int nodeCount(JsonNode jsonNode) {
+        int count = 1;
+        Iterator<JsonNode> elements = jsonNode.elements();
+        while (elements.hasNext()) {
+            count += nodeCount(elements.next());
+        }
+        return count;
+    }
+
+    public String toString() {
+        return "JsonSchemaCachePolicy(maximumSize=" + maximumSize +
+            ", maximumWeight=" + maximumWeight +
+            ", expireAfterWriteNanos=" + expireAfterWriteNanos +
+            ", expireAfterAccessNanos=" + expireAfterAccessNanos + ")";
+    }
+}
@@ -0,0 +1,195 @@
+package org.wikimedia.eventutilities.core.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists resolved JSON schemas in a local directory, so that a new JsonSchemaLoader
+ * can be warmed up at startup without fetching and resolving every schema again,
+ * and can keep working when the schema repository is slow or down.
+ *
+ * Each schema is stored in its own file, named by the SHA-256 of its URI.
+ * The file contains the schema URI, the SHA-256 of the schema content and the schema itself:
+ *
+ *   { "uri": "https://...", "sha256": "...", "schema": { ... } }
+ *
+ * The directory listing serves as the index of cached URIs.  Files are written
+ * atomically, and files whose content does not match their hash are ignored.
+ *
+ * Usage:
+ *
+ * JsonSchemaLoader schemaLoader = new JsonSchemaLoader();
+ * schemaLoader.setDiskCache(new JsonSchemaDiskCache(Paths.get("/var/cache/event-schemas")));
+ * schemaLoader.warmFromDiskCache();
+ */
+public class JsonSchemaDiskCache {
+
+    protected static final String ENTRY_FILE_EXTENSION = ".json";
+
+    protected final Path directory;
+
+    /**
+     * Content hashes of the schemas known to be stored on disk, keyed by URI.
+     * Used to avoid rewriting unchanged schemas.
+     */
+    protected final ConcurrentHashMap<URI, String> storedHashes = new ConcurrentHashMap<>();
+
+    private static final Logger log = LogManager.getLogger(JsonSchemaDiskCache.class.getName());
+
+    /**
+     * @param directory
+     *  Directory to store schemas in.  It will be created if it does not exist.
+     * @throws IOException
+     */
+    public JsonSchemaDiskCache(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Stores the resolved schema for uri, unless the same schema is already stored.
+     * Failures are logged and otherwise ignored, since the disk cache is only an optimization.
+     * @param uri
+     * @param schema
+     */
+    public void put(URI uri, JsonNode schema) {
+        try {
+            String schemaJson = JsonLoader.getInstance().asString(schema);
+            String schemaHash = sha256(schemaJson);
+            if (schemaHash.equals(storedHashes.get(uri))) {
+                return;
+            }
+
+            ObjectNode entry = JsonNodeFactory.instance.objectNode();
+            entry.put("uri", uri.toString());
+            entry.put("sha256", schemaHash);
+            entry.set("schema", schema);
+
+            Path entryPath = entryPath(uri);
+            Path tempPath = Files.createTempFile(directory, entryPath.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempPath, JsonLoader.getInstance().asString(entry).getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tempPath, entryPath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tempPath);
+            }
+            storedHashes.put(uri, schemaHash);
+        } catch (IOException e) {
+            log.warn("Failed writing schema at " + uri + " to disk cache " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the stored schema for uri, or null if there is none
+     * or the stored entry is unreadable.
+     * @param uri
+     * @return
+     */
+    public JsonNode get(URI uri) {
+        Path entryPath = entryPath(uri);
+        if (!Files.exists(entryPath)) {
+            return null;
+        }
+        Map.Entry<URI, JsonNode> entry = readEntry(entryPath);
+        return entry != null && entry.getKey().equals(uri) ? entry.getValue() : null;
+    }
+
+    /**
+     * Deletes the stored schema for uri, if any, e.g. because it was removed upstream.
+     * Failures are logged and otherwise ignored.
+     * @param uri
+     */
+    public void remove(URI uri) {
+        storedHashes.remove(uri);
+        Path entryPath = entryPath(uri);
+        try {
+            Files.deleteIfExists(entryPath);
+        } catch (IOException e) {
+            log.warn("Failed deleting schema at " + uri + " from disk cache " + directory, e);
+        }
+    }
+
+    /**
+     * Reads and returns all readable stored schemas, keyed by URI.
+     * @return
+     */
+    public Map<URI, JsonNode> loadAll() {
+        Map<URI, JsonNode> schemas = new HashMap<>();
+        try (DirectoryStream<Path> entryPaths = Files.newDirectoryStream(directory, "*" + ENTRY_FILE_EXTENSION)) {
+            for (Path entryPath : entryPaths) {
+                Map.Entry<URI, JsonNode> entry = readEntry(entryPath);
+                if (entry != null) {
+                    schemas.put(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed listing schemas in disk cache " + directory, e);
+        }
+        return schemas;
+    }
+
+    /**
+     * Returns the path of the file that stores the schema for uri.
+     * @param uri
+     * @return
+     */
+    public Path entryPath(URI uri) {
+        return directory.resolve(sha256(uri.toString()) + ENTRY_FILE_EXTENSION);
+    }
+
+    /**
+     * Reads a stored entry, verifying its content hash.
+     * @param entryPath
+     * @return the entry's URI and schema, or null if it could not be read or is corrupt.
+     */
+    protected Map.Entry<URI, JsonNode> readEntry(Path entryPath) {
+        try {
+            JsonNode entry = JsonLoader.getInstance().parse(Files.readAllBytes(entryPath));
+            URI uri = URI.create(entry.get("uri").textValue());
+            JsonNode schema = entry.get("schema");
+            String schemaHash = sha256(JsonLoader.getInstance().asString(schema));
+            if (!schemaHash.equals(entry.get("sha256").textValue())) {
+                log.warn("Ignoring corrupt schema disk cache entry " + entryPath);
+                return null;
+            }
+            storedHashes.put(uri, schemaHash);
+            return new AbstractMap.SimpleImmutableEntry<>(uri, schema);
+        } catch (IOException | JsonLoadingException | RuntimeException e) {
+            log.warn("Failed reading schema disk cache entry " + entryPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 of the UTF-8 bytes of s.
+     * @param s
+     * @return
+     */
+    protected static String sha256(String s) {
+        return JsonLoader.sha256(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String toString() {
+        return "JsonSchemaDiskCache(" + directory + ")";
+    }
+}
@@ -1,10 +1,23 @@
 package org.wikimedia.eventutilities.core.json;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Singleton class to handle fetching JSON schemas from URIs,
@@ -15,6 +28,22 @@ import java.util.concurrent.ConcurrentHashMap;
  * Otherwise YAMLParser will be used.  JSON data can contain certain unicode
  * characters that YAML cannot, so it is best to use JsonParser when we can.
  *
+ * Loading is single-flight per URI: if many threads ask for the same uncached
+ * schema at once, only one of them fetches and resolves it, and the others
+ * wait for and share its result.
+ *
+ * The cache is unbounded by default.  Pass a JsonSchemaCachePolicy
+ * to the constructor to bound and expire it.
+ *
+ * Schemas at URIs that can change (e.g. 'latest' schema URIs) can be refreshed
+ * in the background with startRefreshing().  Lookups keep being served from
+ * the cache while the schemas are re-fetched, and a changed schema replaces
+ * the cached one atomically.
+ *
+ * A JsonSchemaDiskCache can be set to persist loaded schemas across restarts.
+ * warmFromDiskCache() fills the in memory cache from it, and if a schema
+ * fails to load, its persisted copy is used instead.
+ *
  * Usage:
  *
  * JsonSchemaLoader schemaLoader = JsonSchemaLoader.getInstance();
@@ -24,11 +53,49 @@ public class JsonSchemaLoader {
 
     static final JsonSchemaLoader instance = new JsonSchemaLoader();
 
-    final ConcurrentHashMap<URI, com.fasterxml.jackson.databind.JsonNode> cache = new ConcurrentHashMap<>();
+    final ConcurrentMap<URI, JsonNode> cache;
+
+    /**
+     * The Caffeine cache behind cache, or null if cache is unbounded.
+     * Used to read cached schemas without counting as an access.
+     */
+    final Cache<URI, JsonNode> boundedCache;
+
+    /**
+     * Loads that are currently in progress, keyed by schema URI.
+     * An entry only exists while its schema is being fetched.
+     */
+    final ConcurrentHashMap<URI, CompletableFuture<JsonNode>> inFlightLoads = new ConcurrentHashMap<>();
 
     final SchemaLoader schemaLoader = new SchemaLoader();
 
-    public JsonSchemaLoader() { }
+    /**
+     * If set, loaded schemas are persisted here, and used as a fallback when loading fails.
+     */
+    private volatile JsonSchemaDiskCache diskCache;
+
+    /**
+     * Runs background refreshes of cached schemas, if started.
+     */
+    private ScheduledExecutorService refreshExecutor;
+
+    private static final Logger log = LogManager.getLogger(JsonSchemaLoader.class.getName());
+
+    /**
+     * Constructs a JsonSchemaLoader with an unbounded cache.
+     */
+    public JsonSchemaLoader() {
+        this(JsonSchemaCachePolicy.unbounded());
+    }
+
+    /**
+     * Constructs a JsonSchemaLoader whose cache follows cachePolicy.
+     * @param cachePolicy
+     */
+    public JsonSchemaLoader(JsonSchemaCachePolicy cachePolicy) {
+        this.boundedCache = cachePolicy.buildBoundedCache();
+        this.cache = boundedCache != null ? boundedCache.asMap() : new ConcurrentHashMap<>();
+    }
 
     public static JsonSchemaLoader getInstance() {
         return instance;
@@ -43,15 +110,245 @@ public class JsonSchemaLoader {
      * @return the jsonschema at schemaURI.
      */
     public JsonNode load(URI schemaUri) throws JsonLoadingException {
-        if (this.cache.containsKey(schemaUri)) {
-            return this.cache.get(schemaUri);
+        JsonNode schema = this.cache.get(schemaUri);
+        if (schema != null) {
+            return schema;
         }
 
+        CompletableFuture<JsonNode> newLoad = new CompletableFuture<>();
+        CompletableFuture<JsonNode> inFlightLoad = this.inFlightLoads.putIfAbsent(schemaUri, newLoad);
+        if (inFlightLoad != null) {
+            // Another thread is already loading this schema, wait for it.
+            return awaitLoad(schemaUri, inFlightLoad);
+        }
+
+        try {
+            // The schema may have been cached between our cache check and
+            // registering newLoad.
+            schema = this.cache.get(schemaUri);
+            if (schema == null) {
+                schema = this.loadUncachedOrFromDisk(schemaUri);
+                this.cache.put(schemaUri, schema);
+            }
+            newLoad.complete(schema);
+            return schema;
+        } catch (JsonLoadingException | RuntimeException e) {
+            newLoad.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Failed loads are not remembered, the next call will try again.
+            this.inFlightLoads.remove(schemaUri, newLoad);
+        }
+    }
+
+    /**
+     * Fetches and parses the schema at schemaUri and resolves its $refs, without
+     * looking in or updating the cache.
+     * @param schemaUri
+     * @return
+     * @throws JsonLoadingException
+     */
+    protected JsonNode loadUncached(URI schemaUri) throws JsonLoadingException {
         // Use SchemaLoader so we resolve any JsonRefs in the JSONSchema.
         JsonLoader jsonLoader = JsonLoader.getInstance();
-        JsonNode schema = this.schemaLoader.load(jsonLoader.load(schemaUri)).getBaseNode();
-        this.cache.put(schemaUri, schema);
-        return schema;
+        return this.schemaLoader.load(jsonLoader.load(schemaUri)).getBaseNode();
+    }
+
+    /**
+     * Calls loadUncached, and persists the loaded schema in the disk cache, if set.
+     * If loading fails and the disk cache has a copy of the schema, that copy is returned,
+     * unless the schema definitely does not exist anymore (e.g. 404 or missing file).
+     * In that case its copy is deleted from the disk cache, so a schema removed
+     * upstream is neither served from disk nor warmed up again.
+     * @param schemaUri
+     * @return
+     * @throws JsonLoadingException
+     */
+    private JsonNode loadUncachedOrFromDisk(URI schemaUri) throws JsonLoadingException {
+        JsonSchemaDiskCache currentDiskCache = this.diskCache;
+        try {
+            JsonNode schema = this.loadUncached(schemaUri);
+            if (currentDiskCache != null) {
+                currentDiskCache.put(schemaUri, schema);
+            }
+            return schema;
+        } catch (JsonLoadingException e) {
+            if (currentDiskCache == null) {
+                throw e;
+            }
+            if (JsonLoader.isNotFoundException(e)) {
+                // Don't bring the removed schema back with warmFromDiskCache either.
+                currentDiskCache.remove(schemaUri);
+                throw e;
+            }
+            JsonNode persistedSchema = currentDiskCache.get(schemaUri);
+            if (persistedSchema == null) {
+                throw e;
+            }
+            log.warn(
+                "Failed loading schema at " + schemaUri + ", using copy from " + currentDiskCache, e
+            );
+            return persistedSchema;
+        }
+    }
+
+    /**
+     * Sets the JsonSchemaDiskCache used to persist loaded schemas.
+     * Set to null to stop using a disk cache.
+     * @param diskCache
+     */
+    public void setDiskCache(JsonSchemaDiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Puts every schema persisted in the disk cache into the in memory cache,
+     * unless it is already cached.
+     * @return the number of schemas added to the in memory cache.
+     */
+    public int warmFromDiskCache() {
+        JsonSchemaDiskCache currentDiskCache = this.diskCache;
+        if (currentDiskCache == null) {
+            return 0;
+        }
+
+        int added = 0;
+        for (Map.Entry<URI, JsonNode> entry : currentDiskCache.loadAll().entrySet()) {
+            if (this.cache.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                added++;
+            }
+        }
+        log.info("Warmed schema cache with " + added + " schemas from " + currentDiskCache);
+        return added;
+    }
+
+    /**
+     * Waits for a load of schemaUri started by another thread and returns its result,
+     * rethrowing its JsonLoadingException if it failed.
+     * @param schemaUri
+     * @param inFlightLoad
+     * @return
+     * @throws JsonLoadingException
+     */
+    private static JsonNode awaitLoad(
+        URI schemaUri,
+        CompletableFuture<JsonNode> inFlightLoad
+    ) throws JsonLoadingException {
+        try {
+            return inFlightLoad.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JsonLoadingException("Interrupted while waiting for schema at " + schemaUri, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JsonLoadingException) {
+                throw (JsonLoadingException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new JsonLoadingException("Failed loading schema at " + schemaUri, e);
+            }
+        }
+    }
+
+    /**
+     * Starts periodically re-fetching every cached schema whose URI matches shouldRefresh.
+     * Cached schemas are still returned by load while being refreshed, so lookups never
+     * block on a refresh.  If a refreshed schema differs from the cached one, it atomically
+     * replaces it.  If refreshing fails, the cached schema is kept.
+     *
+     * Calling this again replaces the previous refresh schedule.
+     *
+     * @param shouldRefresh
+     * @param period
+     * @param unit
+     */
+    public synchronized void startRefreshing(Predicate<URI> shouldRefresh, long period, TimeUnit unit) {
+        stopRefreshing();
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JsonSchemaLoader-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(
+            () -> refreshCached(shouldRefresh), period, period, unit
+        );
+    }
+
+    /**
+     * @return true if background refreshing was started and not stopped since.
+     */
+    public synchronized boolean isRefreshing() {
+        return refreshExecutor != null;
+    }
+
+    /**
+     * Stops background refreshing started by startRefreshing, if any.
+     */
+    public synchronized void stopRefreshing() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Re-fetches every cached schema whose URI matches shouldRefresh, and replaces
+     * the cached schemas that have changed.  Schemas removed from the cache
+     * while being refreshed are not re-added.  Reading cached schemas to refresh
+     * them does not count as an access, so refreshing does not keep unused
+     * schemas from expiring.
+     *
+     * @param shouldRefresh
+     * @return the number of schemas that changed.
+     */
+    public int refreshCached(Predicate<URI> shouldRefresh) {
+        List<URI> schemaUris = new ArrayList<>();
+        for (URI schemaUri : this.cache.keySet()) {
+            if (shouldRefresh.test(schemaUri)) {
+                schemaUris.add(schemaUri);
+            }
+        }
+
+        int changed = 0;
+        for (URI schemaUri : schemaUris) {
+            JsonNode cachedSchema = getQuietly(schemaUri);
+            if (cachedSchema == null) {
+                continue;
+            }
+
+            JsonNode refreshedSchema;
+            try {
+                refreshedSchema = this.loadUncached(schemaUri);
+            } catch (JsonLoadingException | RuntimeException e) {
+                log.warn("Failed refreshing schema at " + schemaUri + ", keeping cached schema.", e);
+                continue;
+            }
+
+            if (!refreshedSchema.equals(cachedSchema) &&
+                this.cache.replace(schemaUri, cachedSchema, refreshedSchema)
+            ) {
+                log.info("Refreshed changed schema at " + schemaUri);
+                JsonSchemaDiskCache currentDiskCache = this.diskCache;
+                if (currentDiskCache != null) {
+                    currentDiskCache.put(schemaUri, refreshedSchema);
+                }
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gets a cached schema without it counting as an access, so that refreshing
+     * does not keep schemas from expiring.
+     * @param schemaUri
+     * @return
+     */
+    private JsonNode getQuietly(URI schemaUri) {
+        return boundedCache != null ?
+            boundedCache.policy().getIfPresentQuietly(schemaUri) :
+            this.cache.get(schemaUri);
     }
 
     /**
@@ -63,6 +360,15 @@ public class JsonSchemaLoader {
         return JsonLoader.getInstance().parse(data);
     }
 
+    /**
+     * Parses the UTF-8 encoded JSON or YAML bytes into a JsonNode.
+     * @param data UTF-8 encoded JSON or YAML to parse into a JsonNode.
+     * @return
+     */
+    public JsonNode parse(byte[] data) throws JsonLoadingException {
+        return JsonLoader.getInstance().parse(data);
+    }
+
     /**
      * Proxy method to see if the schemaUri is currently cached.
      * @param schemaUri
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 
 import org.wikimedia.eventutilities.core.event.EventStreamFactory;
 import org.wikimedia.eventutilities.core.event.EventStream;
@@ -15,6 +17,7 @@ import org.wikimedia.eventutilities.core.http.HttpResult;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +31,19 @@ public class CanaryEventProducer {
      */
     protected final EventStreamFactory eventStreamFactory;
 
+    /**
+     * Client used to POST canary events.  This is reused between POSTs
+     * so that connections to event services are pooled.
+     * If null, the shared default HttpRequest client is used.
+     */
+    protected final CloseableHttpClient httpClient;
+
+    /**
+     * Non-blocking client used to POST canary events concurrently.
+     * If null, the shared default HttpRequest async client is used.
+     */
+    protected final CloseableHttpAsyncClient httpAsyncClient;
+
     /**
      * List of data center names that will be used to look up event service urls.
      */
@@ -53,10 +69,43 @@ public class CanaryEventProducer {
 
     /**
      * Constructs a new CanaryEventProducer using the provided EventStreamFactory
+     * and the shared default HttpRequest client.
      * @param eventStreamFactory
      */
     public CanaryEventProducer(EventStreamFactory eventStreamFactory) {
+        // Resolve the default client when POSTing, it may be closed and recreated meanwhile.
+        this(eventStreamFactory, null);
+    }
+
+    /**
+     * Constructs a new CanaryEventProducer using the provided EventStreamFactory
+     * that POSTs canary events with httpClient.
+     * The caller owns httpClient and is responsible for closing it.
+     * If httpClient is null, the shared default HttpRequest client is used.
+     * @param eventStreamFactory
+     * @param httpClient
+     */
+    public CanaryEventProducer(EventStreamFactory eventStreamFactory, CloseableHttpClient httpClient) {
+        this(eventStreamFactory, httpClient, null);
+    }
+
+    /**
+     * Constructs a new CanaryEventProducer using the provided EventStreamFactory
+     * that POSTs canary events with httpClient, and with httpAsyncClient
+     * when POSTing concurrently.
+     * The caller owns both clients and is responsible for closing them.
+     * @param eventStreamFactory
+     * @param httpClient
+     * @param httpAsyncClient
+     */
+    public CanaryEventProducer(
+        EventStreamFactory eventStreamFactory,
+        CloseableHttpClient httpClient,
+        CloseableHttpAsyncClient httpAsyncClient
+    ) {
         this.eventStreamFactory = eventStreamFactory;
+        this.httpClient = httpClient;
+        this.httpAsyncClient = httpAsyncClient;
     }
 
     /**
@@ -196,13 +245,103 @@ public class CanaryEventProducer {
      * @return
      */
     public Map<URI, HttpResult> postCanaryEvents(List<String> streams) {
+        CloseableHttpClient client = httpClient != null ?
+            httpClient : HttpRequest.getDefaultHttpClient();
         return getCanaryEventsToPost(streams).entrySet().stream()
             .collect(Collectors.toMap(
                 Map.Entry::getKey,
-                entry -> postEvents(entry.getKey(), entry.getValue())
+                entry -> postEvents(client, entry.getKey(), entry.getValue())
             ));
     }
 
+    /**
+     * Like postCanaryEvents(List), but POSTs to all event service urls concurrently
+     * using a non-blocking HTTP client, so total wall time is about that of the slowest
+     * POST rather than the sum of all of them.  Concurrency is bounded by the
+     * async client's connection pool limits.
+     *
+     * All POSTs share an overall deadline of timeoutMillis.  Any POST that has not
+     * completed by then is aborted, and its result will be a failure caused by
+     * a TimeoutException.  The returned Map has the same keys as postCanaryEvents(List).
+     *
+     * @param streams
+     * @param timeoutMillis
+     * @return
+     */
+    public Map<URI, HttpResult> postCanaryEventsConcurrently(List<String> streams, long timeoutMillis) {
+        CloseableHttpAsyncClient client = httpAsyncClient != null ?
+            httpAsyncClient : HttpRequest.getDefaultHttpAsyncClient();
+        Map<URI, List<ObjectNode>> canaryEventsToPost = getCanaryEventsToPost(streams);
+
+        // Start all POSTs before waiting for any of them.
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int requestTimeoutMillis = (int) Math.min(timeoutMillis, Integer.MAX_VALUE);
+        Map<URI, CompletableFuture<HttpResult>> resultFutures = new HashMap<>();
+        for (Map.Entry<URI, List<ObjectNode>> entry : canaryEventsToPost.entrySet()) {
+            resultFutures.put(
+                entry.getKey(),
+                postEventsAsync(client, entry.getKey(), entry.getValue(), requestTimeoutMillis)
+            );
+        }
+
+        Map<URI, HttpResult> results = new HashMap<>();
+        for (Map.Entry<URI, CompletableFuture<HttpResult>> entry : resultFutures.entrySet()) {
+            results.put(
+                entry.getKey(),
+                HttpRequest.awaitResult(entry.getValue(), deadline - System.currentTimeMillis())
+            );
+        }
+        return results;
+    }
+
+    /**
+     * POSTs the given list of events to the eventServiceUri
+     * using the shared default HttpRequest client.
+     * See postEvents(CloseableHttpClient, URI, List) for details.
+     *
+     * @param eventServiceUri
+     * @param events
+     * @return
+     */
+    public static HttpResult postEvents(URI eventServiceUri, List<ObjectNode> events) {
+        return postEvents(HttpRequest.getDefaultHttpClient(), eventServiceUri, events);
+    }
+
+    /**
+     * Asynchronously POSTs the given list of events to the eventServiceUri
+     * using httpAsyncClient.  Success is determined in the same way as
+     * postEvents(CloseableHttpClient, URI, List).
+     *
+     * @param httpAsyncClient
+     * @param eventServiceUri
+     * @param events
+     * @param timeoutMillis
+     *  Per request timeout, see HttpRequest.postAsync.
+     * @return
+     */
+    public static CompletableFuture<HttpResult> postEventsAsync(
+        CloseableHttpAsyncClient httpAsyncClient,
+        URI eventServiceUri,
+        List<ObjectNode> events,
+        int timeoutMillis
+    ) {
+        try {
+            return HttpRequest.postJsonAsync(
+                httpAsyncClient,
+                eventServiceUri.toString(),
+                eventsAsArrayNode(events),
+                // Only consider 201 and 202 from EventGate as fully successful POSTs.
+                statusCode -> statusCode == 201 || statusCode == 202,
+                timeoutMillis
+            );
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(
+                "Encountered JsonProcessingException when attempting to POST canary events to " +
+                    eventServiceUri + ". " + e.getMessage()
+            );
+        }
+    }
+
     /**
      * POSTs the given list of
      * events to the eventServiceUri.
@@ -225,22 +364,21 @@ public class CanaryEventProducer {
      * If there is a local exception during POSTing, success will be false
      * and the Exception message will be in message.
      *
+     * @param httpClient
      * @param eventServiceUri
      * @param events
      * @return
      */
-    public static HttpResult postEvents(URI eventServiceUri, List<ObjectNode> events) {
-        // Convert List of events to ArrayNode of events to allow
-        // jackson to serialize them as an array of events.
-        ArrayNode eventsArray = JsonNodeFactory.instance.arrayNode();
-        for (ObjectNode event : events) {
-            eventsArray.add(event);
-        }
-
+    public static HttpResult postEvents(
+        CloseableHttpClient httpClient,
+        URI eventServiceUri,
+        List<ObjectNode> events
+    ) {
         try {
             return HttpRequest.postJson(
+                httpClient,
                 eventServiceUri.toString(),
-                eventsArray,
+                eventsAsArrayNode(events),
                 // Only consider 201 and 202 from EventGate as fully successful POSTs.
                 statusCode -> statusCode == 201 || statusCode == 202
             );
@@ -251,4 +389,18 @@ public class CanaryEventProducer {
             );
         }
     }
+
+    /**
+     * Converts List of events to ArrayNode of events to allow
+     * jackson to serialize them as an array of events.
+     * @param events
+     * @return
+     */
+    protected static ArrayNode eventsAsArrayNode(List<ObjectNode> events) {
+        ArrayNode eventsArray = JsonNodeFactory.instance.arrayNode();
+        for (ObjectNode event : events) {
+            eventsArray.add(event);
+        }
+        return eventsArray;
+    }
 }
@@ -11,13 +11,18 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import org.wikimedia.eventutilities.core.json.JsonLoadingException;
+import org.wikimedia.eventutilities.core.json.JsonSchemaLoader;
 
 import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class TestEventSchemaLoader {
     private EventSchemaLoader schemaLoader;
@@ -97,6 +102,100 @@ public class TestEventSchemaLoader {
         );
     }
 
+    @Test
+    public void extractSchemaUri() throws URISyntaxException, JsonLoadingException {
+        URI expectedSchemaUri = new URI("/test_event.schema.yaml");
+        assertEquals(expectedSchemaUri, schemaLoader.extractSchemaUri(testEvent));
+        assertEquals(
+            expectedSchemaUri,
+            schemaLoader.extractSchemaUri(testEvent.toString()),
+            "Should extract schema URI from JSON string event"
+        );
+        assertEquals(
+            expectedSchemaUri,
+            schemaLoader.extractSchemaUri(
+                "{\"meta\": {\"$schema\": \"/nested\"}, \"$schema\": \"/test_event.schema.yaml\""
+            ),
+            "Should extract top level schema URI without reading the rest of the event"
+        );
+
+        EventSchemaLoader nestedSchemaLoader = new EventSchemaLoader(schemaBaseUris, "/meta/schema_uri");
+        assertEquals(
+            expectedSchemaUri,
+            nestedSchemaLoader.extractSchemaUri(
+                "{\"$schema\": \"/other\", \"meta\": {\"schema_uri\": \"/test_event.schema.yaml\"}}"
+                    .getBytes(StandardCharsets.UTF_8)
+            ),
+            "Should extract schema URI at nested schema field from JSON bytes event"
+        );
+
+        assertThrows(RuntimeException.class, () -> schemaLoader.extractSchemaUri("{\"meta\": {}}"));
+    }
+
+    @Test
+    public void getEventSchemaUsesResolvedSchema() throws URISyntaxException, JsonLoadingException {
+        EventSchemaLoader resolvingSchemaLoader = new EventSchemaLoader(
+            schemaBaseUris, "/$schema", new JsonSchemaLoader()
+        );
+        URI testSchemaUri = new URI("/test_event.schema.yaml");
+        assertNull(resolvingSchemaLoader.getResolvedBaseUri(testSchemaUri));
+
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getEventSchema(testEvent));
+        assertEquals(0, resolvingSchemaLoader.getResolvedSchemaHitCount());
+        assertEquals(1, resolvingSchemaLoader.getResolvedSchemaMissCount());
+        assertEquals(
+            schemaBaseUris.get(1),
+            resolvingSchemaLoader.getResolvedBaseUri(testSchemaUri),
+            "Should remember the base URI the schema was found under"
+        );
+
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getEventSchema(testEvent.toString()));
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getSchema(testSchemaUri));
+        assertEquals(2, resolvingSchemaLoader.getResolvedSchemaHitCount(), "Should use resolved schema");
+        assertEquals(1, resolvingSchemaLoader.getResolvedSchemaMissCount());
+
+        resolvingSchemaLoader.clearResolvedSchemas();
+        assertNull(resolvingSchemaLoader.getResolvedBaseUri(testSchemaUri));
+    }
+
+    @Test
+    public void getEventSchemaResolvedUnderSecondBaseUri() throws JsonLoadingException {
+        List<URI> loadedUris = Collections.synchronizedList(new ArrayList<>());
+        JsonSchemaLoader recordingJsonSchemaLoader = new JsonSchemaLoader() {
+            protected JsonNode loadUncached(URI schemaUri) throws JsonLoadingException {
+                loadedUris.add(schemaUri);
+                return super.loadUncached(schemaUri);
+            }
+        };
+        EventSchemaLoader resolvingSchemaLoader = new EventSchemaLoader(
+            schemaBaseUris, "/$schema", recordingJsonSchemaLoader
+        );
+        assertNull(resolvingSchemaLoader.getNegativeCache(), "Negative cache should be off");
+
+        List<URI> possibleSchemaUris = resolvingSchemaLoader.getPossibleSchemaUrls(testEvent);
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getEventSchema(testEvent));
+        assertEquals(possibleSchemaUris, loadedUris, "Should look under the first base URI before the second");
+
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getEventSchema(testEvent));
+        assertEquals(expectedTestSchema, resolvingSchemaLoader.getEventSchema(testEvent));
+        assertEquals(
+            possibleSchemaUris,
+            loadedUris,
+            "Should not look under the first base URI again for a schema found under the second"
+        );
+        assertEquals(2, resolvingSchemaLoader.getResolvedSchemaHitCount());
+
+        resolvingSchemaLoader.setResolutionTtl(0);
+        resolvingSchemaLoader.clearResolvedSchemas();
+        resolvingSchemaLoader.getEventSchema(testEvent);
+        resolvingSchemaLoader.getEventSchema(testEvent);
+        assertEquals(
+            possibleSchemaUris.get(0),
+            loadedUris.get(loadedUris.size() - 1),
+            "Should look under the first base URI every time without a resolution TTL"
+        );
+    }
+
     @Test
     public void getPossibleEventSchemaURIs() throws URISyntaxException {
         List<URI> expectedSchemaUris = new ArrayList<>();
@@ -133,6 +232,45 @@ public class TestEventSchemaLoader {
         );
     }
 
+    @Test
+    public void getEventSchemaFromJsonBytes() throws JsonLoadingException {
+        JsonNode testSchema = schemaLoader.getEventSchema(
+            testEvent.toString().getBytes(StandardCharsets.UTF_8)
+        );
+        assertEquals(
+            expectedTestSchema,
+            testSchema,
+            "Should load schema from JSON bytes event $schema field"
+        );
+    }
+
+    @Test
+    public void getPossibleEventSchemaURIsIsMemoized() throws URISyntaxException {
+        assertSame(
+            schemaLoader.getSchemaUris(testEvent),
+            schemaLoader.getSchemaUris(testEvent),
+            "Should return memoized schema URIs for the same event schema URI"
+        );
+
+        List<URI> testSchemaUris = schemaLoader.getPossibleSchemaUrls(testEvent);
+        List<URI> expectedSchemaUris = new ArrayList<>(testSchemaUris);
+        testSchemaUris.clear();
+        assertEquals(
+            expectedSchemaUris,
+            schemaLoader.getPossibleSchemaUrls(new URI("/test_event.schema.yaml")),
+            "Should not let callers modify the memoized schema URIs"
+        );
+
+        List<URI> latestSchemaUris = schemaLoader.getPossibleLatestSchemaUrls(testEvent);
+        List<URI> expectedLatestSchemaUris = new ArrayList<>(latestSchemaUris);
+        latestSchemaUris.clear();
+        assertEquals(
+            expectedLatestSchemaUris,
+            schemaLoader.getPossibleLatestSchemaUrls(testEvent),
+            "Should not let callers modify the memoized latest schema URIs"
+        );
+    }
+
     @Test
     public void getPossibleLatestEventSchemaUrls() throws URISyntaxException {
         List<URI> expectedSchemaUris = new ArrayList<>();
@@ -180,4 +318,68 @@ public class TestEventSchemaLoader {
             // we should get here.
         }
     }
+
+    @Test
+    public void isLatestSchemaUri() throws URISyntaxException {
+        assertTrue(schemaLoader.isLatestSchemaUri(new URI(schemaBaseUris.get(0) + "/test/event/latest")));
+        assertTrue(schemaLoader.isLatestSchemaUri(schemaLoader.getLatestSchemaUri(new URI("/test/event/1.0.0"))));
+        assertFalse(schemaLoader.isLatestSchemaUri(new URI(schemaBaseUris.get(0) + "/test/event/1.0.0")));
+    }
+
+    @Test
+    public void getEventSchemaWithConcurrentProbing() throws JsonLoadingException {
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+        try {
+            for (long hedgeDelayMillis : new long[]{0, 50}) {
+                // Use a new JsonSchemaLoader so nothing is cached yet.
+                EventSchemaLoader probingSchemaLoader = new EventSchemaLoader(
+                    schemaBaseUris, "/$schema", new JsonSchemaLoader()
+                );
+                probingSchemaLoader.enableConcurrentProbing(executor, hedgeDelayMillis);
+
+                JsonNode testSchema = probingSchemaLoader.getEventSchema(testEvent);
+                assertEquals(
+                    expectedTestSchema,
+                    testSchema,
+                    "Should load schema from second base URI when probing concurrently"
+                );
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void getEventSchemaSkipsNotFoundSchemaUris() throws JsonLoadingException {
+        // The test event schema is not in the first base URI, so the first
+        // lookup should remember that, and the second should skip it.
+        // (Use loadFirst for the second lookup, getEventSchema would
+        // reuse the resolved schema URI without looking at the others.)
+        schemaLoader.setNegativeCacheTtl(EventSchemaLoader.NEGATIVE_CACHE_TTL_MILLIS_DEFAULT);
+        schemaLoader.getEventSchema(testEvent);
+        assertEquals(0, schemaLoader.getNegativeCache().hitCount());
+
+        JsonNode testSchema = schemaLoader.loadFirst(schemaLoader.getPossibleSchemaUrls(testEvent));
+        assertEquals(expectedTestSchema, testSchema);
+        assertEquals(1, schemaLoader.getNegativeCache().hitCount(), "Should skip not found schema URI");
+
+        schemaLoader.setNegativeCacheTtl(0);
+        assertNull(schemaLoader.getNegativeCache(), "Should disable negative cache");
+        assertEquals(expectedTestSchema, schemaLoader.getEventSchema(testEvent));
+    }
+
+    @Test
+    public void getEventSchemaNotFoundAnywhere() {
+        ObjectNode event = testEvent.deepCopy();
+        event.put("$schema", "/non_existent_schema.yaml");
+
+        schemaLoader.setNegativeCacheTtl(EventSchemaLoader.NEGATIVE_CACHE_TTL_MILLIS_DEFAULT);
+        assertThrows(JsonLoadingException.class, () -> schemaLoader.getEventSchema(event));
+        assertThrows(JsonLoadingException.class, () -> schemaLoader.getEventSchema(event));
+        assertEquals(
+            schemaBaseUris.size(),
+            schemaLoader.getNegativeCache().hitCount(),
+            "Should skip all not found schema URIs"
+        );
+    }
 }
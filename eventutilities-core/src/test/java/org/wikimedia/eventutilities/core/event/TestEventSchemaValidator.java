@@ -0,0 +1,161 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.wikimedia.eventutilities.core.json.JsonLoadingException;
+import org.wikimedia.eventutilities.core.json.JsonSchemaLoader;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class TestEventSchemaValidator {
+    private EventSchemaValidator validator;
+
+    private static final List<String> schemaBaseUris = new ArrayList<>(Arrays.asList(
+        "file://" + new File("src/test/resources/event-schemas/repo1").getAbsolutePath(),
+        "file://" + new File("src/test/resources/event-schemas/repo2").getAbsolutePath()
+    ));
+
+    private static final JsonNodeFactory jf = JsonNodeFactory.instance;
+
+    private ObjectNode validEvent;
+
+    @BeforeEach
+    public void setUp() {
+        validator = new EventSchemaValidator(
+            new EventSchemaLoader(schemaBaseUris, "/$schema", new JsonSchemaLoader())
+        );
+
+        ObjectNode eventMeta = jf.objectNode();
+        eventMeta.put("dt", "2019-01-01T00:00:00Z");
+        eventMeta.put("stream", "test.event");
+        validEvent = jf.objectNode();
+        validEvent.put("$schema", "/test_event.schema.yaml");
+        validEvent.set("meta", eventMeta);
+        validEvent.put("test", "specific test value");
+    }
+
+    @Test
+    public void validateValidEvent() throws JsonLoadingException {
+        EventValidationReport report = validator.validate(validEvent);
+        assertTrue(report.isSuccess(), "Should validate valid event. " + report);
+        assertEquals(URI.create("/test_event.schema.yaml"), report.getSchemaUri());
+        assertEquals(0, report.getErrors().size());
+    }
+
+    @Test
+    public void validateInvalidEvent() throws JsonLoadingException {
+        ObjectNode invalidEvent = validEvent.deepCopy();
+        ((ObjectNode) invalidEvent.get("meta")).remove("stream");
+        invalidEvent.put("test", 1234);
+
+        EventValidationReport report = validator.validate(invalidEvent);
+        assertFalse(report.isSuccess(), "Should not validate invalid event");
+        assertEquals(2, report.getErrors().size(), "Should report each validation error");
+    }
+
+    @Test
+    public void validateEventBytes() throws JsonLoadingException {
+        EventValidationReport report = validator.validate(
+            validEvent.toString().getBytes(StandardCharsets.UTF_8)
+        );
+        assertTrue(report.isSuccess(), "Should validate valid event bytes. " + report);
+    }
+
+    @Test
+    public void compilesSchemaOnce() throws JsonLoadingException {
+        validator.validate(validEvent);
+        validator.validate(validEvent.toString());
+        assertEquals(1, validator.compiledSchemaCount(), "Should reuse compiled schema");
+    }
+
+    @Test
+    public void validateEventWithMissingSchema() {
+        ObjectNode event = validEvent.deepCopy();
+        event.put("$schema", "/non_existent_schema.yaml");
+        assertThrows(JsonLoadingException.class, () -> validator.validate(event));
+    }
+
+    @Test
+    public void validateBatch() {
+        ObjectNode invalidEvent = validEvent.deepCopy();
+        invalidEvent.put("test", 1234);
+        ObjectNode missingSchemaEvent = validEvent.deepCopy();
+        missingSchemaEvent.put("$schema", "/non_existent_schema.yaml");
+
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(validEvent.toString());
+            events.add(invalidEvent.toString());
+            events.add(missingSchemaEvent.toString());
+            events.add("{not json");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            validator.setBatchPool(pool);
+            List<EventValidationReport> reports = validator.validateJsonStrings(events);
+
+            assertEquals(events.size(), reports.size(), "Should report on every event");
+            for (int i = 0; i < events.size(); i += 4) {
+                assertTrue(reports.get(i).isSuccess(), "Should validate valid event in batch");
+                assertFalse(reports.get(i + 1).isSuccess(), "Should not validate invalid event in batch");
+                assertEquals(1, reports.get(i + 1).getErrors().size());
+                assertFalse(reports.get(i + 2).isSuccess(), "Should fail event with missing schema in batch");
+                assertEquals(
+                    URI.create("/non_existent_schema.yaml"),
+                    reports.get(i + 2).getSchemaUri()
+                );
+                assertFalse(reports.get(i + 3).isSuccess(), "Should fail unparsable event in batch");
+                assertNull(reports.get(i + 3).getSchemaUri());
+            }
+            assertEquals(1, validator.compiledSchemaCount(), "Should compile schema once per batch");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void validateBatchWithDistinctSchemas() {
+        ObjectNode latestEvent = validEvent.deepCopy();
+        latestEvent.put("$schema", "/latest");
+
+        List<String> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(validEvent.toString());
+            events.add(latestEvent.toString());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            validator.setBatchPool(pool);
+            for (EventValidationReport report : validator.validateJsonStrings(events)) {
+                assertTrue(report.isSuccess(), "Should validate events of each schema in batch. " + report);
+            }
+            assertEquals(2, validator.compiledSchemaCount(), "Should compile each distinct schema once");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void validateBatchOfJsonBytes() {
+        List<byte[]> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(validEvent.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        for (EventValidationReport report : validator.validateJsonBytes(events)) {
+            assertTrue(report.isSuccess(), "Should validate valid event bytes in batch. " + report);
+        }
+    }
+}
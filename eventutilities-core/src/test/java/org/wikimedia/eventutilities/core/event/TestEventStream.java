@@ -2,15 +2,22 @@ package org.wikimedia.eventutilities.core.event;
 
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeAll;
 import org.wikimedia.eventutilities.core.json.JsonLoader;
 import org.wikimedia.eventutilities.core.json.JsonLoadingException;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -149,6 +156,54 @@ public class TestEventStream {
         );
     }
 
+    @Test
+    public void settings() {
+        EventStream es = eventStreamFactory.createEventStream("mediawiki.page-create");
+        EventStreamSettings settings = es.settings();
+        assertSame(settings, es.settings(), "Should reuse settings while stream configs are unchanged");
+        assertEquals(es.topics(), settings.getTopics());
+        assertEquals("eventgate-main", settings.getEventServiceName());
+        assertEquals(
+            URI.create("https://eventgate-main.svc.codfw.wmnet:4492/v1/events"),
+            settings.getEventServiceUri("codfw")
+        );
+        assertNull(settings.getEventServiceUri("nonexistent-dc"));
+        URI schemaUri = settings.getSchemaUri();
+
+        ObjectNode otherStreamConfigs = JsonNodeFactory.instance.objectNode();
+        otherStreamConfigs.putObject("other.stream");
+        es.eventStreamConfig.streamConfigsSnapshot.updateAndGet(
+            snapshot -> snapshot.merge(otherStreamConfigs)
+        );
+        EventStreamSettings newSettings = es.settings();
+        assertNotSame(settings, newSettings, "Should resolve settings again after stream configs change");
+        assertEquals(settings.getTopics(), newSettings.getTopics());
+        assertSame(
+            schemaUri,
+            newSettings.getSchemaUri(),
+            "Should not rebuild schema URI of unchanged stream config"
+        );
+    }
+
+    @Test
+    public void settingsWithBadSchemaTitle(@TempDir Path tempDir) throws IOException {
+        Path streamConfigsFile = tempDir.resolve("stream_configs.json");
+        Files.write(
+            streamConfigsFile,
+            ("{\"bad.stream\": {\"schema_title\": \"bad schema{title\", " +
+                "\"destination_event_service\": \"eventgate-main\", " +
+                "\"topics\": [\"eqiad.bad.stream\"]}}").getBytes(StandardCharsets.UTF_8)
+        );
+        EventStream es = EventStreamFactory.createStaticConfigEventStreamFactory(
+            schemaBaseUris, streamConfigsFile.toUri().toString(), eventServiceToUriMap
+        ).createEventStream("bad.stream");
+
+        assertThrows(IllegalArgumentException.class, es::schemaUri, "Should fail building bad schema URI");
+        assertEquals(Collections.singletonList("eqiad.bad.stream"), es.topics());
+        assertEquals("eventgate-main", es.eventServiceName());
+        assertEquals(eventServiceToUriMap.get("eventgate-main"), es.eventServiceUri());
+    }
+
     @Test
     public void exampleEvent() {
         EventStream es = eventStreamFactory.createEventStream("eventlogging_SearchSatisfaction");
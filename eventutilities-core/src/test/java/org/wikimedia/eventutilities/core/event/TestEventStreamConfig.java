@@ -1,6 +1,7 @@
 package org.wikimedia.eventutilities.core.event;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.wikimedia.eventutilities.core.json.JsonLoader;
 import org.wikimedia.eventutilities.core.json.JsonLoadingException;
@@ -10,6 +11,15 @@ import java.net.URI;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -188,4 +198,343 @@ public class TestEventStreamConfig {
         );
         assertEquals(expected, settingValues, "Should collect all cached settings for all streams as a List of Strings");
     }
+
+    @Test
+    public void resetKeepsUnchangedStreamConfigs() {
+        EventStreamConfigSnapshot snapshot = streamConfigs.streamConfigsSnapshot.get();
+        streamConfigs.reset();
+        assertSame(
+            snapshot,
+            streamConfigs.streamConfigsSnapshot.get(),
+            "Should keep snapshot if the loader returns the same stream configs"
+        );
+
+        streamConfigs.getStreamConfig("mediawiki.job.refreshLinks");
+        streamConfigs.reset();
+        assertSame(
+            snapshot.get("mediawiki.page-create"),
+            streamConfigs.streamConfigsSnapshot.get().get("mediawiki.page-create"),
+            "Should reuse entries of unchanged stream configs"
+        );
+    }
+
+    @Test
+    public void getStreamConfigReturnsCopy() {
+        ObjectNode config = streamConfigs.getStreamConfig("mediawiki.page-create");
+        ((ObjectNode) config.get("mediawiki.page-create")).put("schema_title", "modified");
+        assertEquals(
+            "mediawiki/revision/create",
+            streamConfigs.getSchemaTitle("mediawiki.page-create"),
+            "Should not modify cached stream config"
+        );
+    }
+
+    @Test
+    public void getTopics() {
+        List<String> topics = streamConfigs.getTopics("mediawiki.page-create");
+        assertEquals(
+            Arrays.asList("eqiad.mediawiki.page-create", "codfw.mediawiki.page-create"),
+            topics,
+            "Should get topics for a stream"
+        );
+        topics.add("modified");
+        assertEquals(
+            Arrays.asList("eqiad.mediawiki.page-create", "codfw.mediawiki.page-create"),
+            streamConfigs.getTopics("mediawiki.page-create"),
+            "Should not modify cached topics"
+        );
+        assertSame(
+            streamConfigs.getTopicsView("mediawiki.page-create"),
+            streamConfigs.getTopicsView("mediawiki.page-create"),
+            "Should not rebuild topics view"
+        );
+        assertEquals(Collections.emptyList(), streamConfigs.getTopics("no_settings"));
+        assertEquals(Collections.emptyList(), streamConfigs.getTopics("nonexistent-stream"));
+    }
+
+    @Test
+    public void getSettingReturnsCopy() {
+        ((ArrayNode) streamConfigs.getSetting("mediawiki.page-create", "topics")).add("modified");
+        assertEquals(
+            2,
+            streamConfigs.getSettingView("mediawiki.page-create", "topics").size(),
+            "Should not modify cached setting"
+        );
+    }
+
+    @Test
+    public void getSchemaTitleAndEventServiceName() {
+        assertEquals("mediawiki/revision/create", streamConfigs.getSchemaTitle("mediawiki.page-create"));
+        assertEquals("eventgate-main", streamConfigs.getEventServiceName("mediawiki.page-create"));
+        assertNull(streamConfigs.getSchemaTitle("no_settings"));
+        assertNull(streamConfigs.getEventServiceName("nonexistent-stream"));
+    }
+
+    @Test
+    public void getStreamConfigMatchingPattern() {
+        assertEquals(
+            "mediawiki/job",
+            streamConfigs.getSchemaTitle("mediawiki.job.foo"),
+            "Should get setting from stream config of matching stream name pattern"
+        );
+
+        JsonNode config = streamConfigs.getStreamConfig("mediawiki.job.foo");
+        JsonNode expected = JsonNodeFactory.instance.objectNode().set(
+            "mediawiki.job.foo", testStreamConfigsContent.get("/^mediawiki\\.job\\..+/")
+        );
+        assertEquals(expected, config, "Should return pattern stream config for stream name");
+
+        assertNull(
+            streamConfigs.getSchemaTitle("not.mediawiki.job.foo"),
+            "Should not match stream name that does not match pattern"
+        );
+    }
+
+    @Test
+    public void exactStreamNameWinsOverPattern() {
+        GeneratingEventStreamConfigLoader loader = new GeneratingEventStreamConfigLoader();
+        loader.allStreamConfigs.set("/^stream/", GeneratingEventStreamConfigLoader.streamConfig("pattern"));
+        EventStreamConfig patternStreamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        assertEquals(Collections.singletonList("stream0"), patternStreamConfigs.getTopics("stream0"));
+        assertEquals(Collections.singletonList("pattern"), patternStreamConfigs.getTopics("stream1"));
+        assertEquals(
+            Arrays.asList("stream0", "/^stream/"),
+            patternStreamConfigs.cachedStreamNames(),
+            "Should not fetch stream name that matches a pattern"
+        );
+    }
+
+    @Test
+    public void getStreamNameByTopic() {
+        assertEquals("mediawiki.page-create", streamConfigs.getStreamNameByTopic("codfw.mediawiki.page-create"));
+        assertEquals(
+            "mediawiki/revision/create",
+            streamConfigs.getSchemaTitleByTopic("eqiad.mediawiki.page-create")
+        );
+        assertEquals(
+            "/^mediawiki\\.job\\..+/",
+            streamConfigs.getStreamNameByTopic("eqiad.mediawiki.job.foo"),
+            "Should find stream by matching topic pattern"
+        );
+        assertEquals("mediawiki/job", streamConfigs.getSchemaTitleByTopic("codfw.mediawiki.job.bar"));
+        assertNull(streamConfigs.getStreamNameByTopic("mediawiki.job.foo"));
+        assertNull(streamConfigs.getSchemaTitleByTopic("nonexistent-topic"));
+    }
+
+    /**
+     * EventStreamConfigLoader that makes up a stream config for any stream name,
+     * and always returns the same ObjectNode for all streams.
+     */
+    private static class GeneratingEventStreamConfigLoader extends EventStreamConfigLoader {
+        final ObjectNode allStreamConfigs = JsonNodeFactory.instance.objectNode();
+
+        GeneratingEventStreamConfigLoader() {
+            allStreamConfigs.set("stream0", streamConfig("stream0"));
+        }
+
+        public ObjectNode load(List<String> streamNames) {
+            if (streamNames.isEmpty()) {
+                return allStreamConfigs;
+            }
+            ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+            for (String streamName : streamNames) {
+                streamConfigs.set(streamName, streamConfig(streamName));
+            }
+            return streamConfigs;
+        }
+
+        static ObjectNode streamConfig(String streamName) {
+            ObjectNode streamConfig = JsonNodeFactory.instance.objectNode();
+            streamConfig.putArray("topics").add(streamName);
+            return streamConfig;
+        }
+    }
+
+    @Test
+    public void concurrentReadsMissesAndResets() throws Exception {
+        GeneratingEventStreamConfigLoader loader = new GeneratingEventStreamConfigLoader();
+        EventStreamConfig concurrentStreamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (thread == 0 && i % 10 == 0) {
+                            concurrentStreamConfigs.reset();
+                        }
+                        String streamName = "stream" + (i % 50);
+                        assertEquals(
+                            Collections.singletonList(streamName),
+                            concurrentStreamConfigs.getTopics(streamName),
+                            "Should always see a consistent stream config"
+                        );
+                        concurrentStreamConfigs.fieldsStream().forEach(field -> assertEquals(
+                            field.getKey(), field.getValue().get("topics").get(0).asText()
+                        ));
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, loader.allStreamConfigs.size(), "Should not modify loaded stream configs");
+    }
+
+    @Test
+    public void mergeMissingIsIncremental() {
+        ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+        streamConfigs.set("/^stream\\..+/", GeneratingEventStreamConfigLoader.streamConfig("/^topic\\..+/"));
+        EventStreamConfigSnapshot snapshot = new EventStreamConfigSnapshot(streamConfigs);
+        assertEquals("/^stream\\..+/", snapshot.resolve("stream.a").streamName);
+
+        ObjectNode moreStreamConfigs = JsonNodeFactory.instance.objectNode();
+        moreStreamConfigs.set("stream.b", GeneratingEventStreamConfigLoader.streamConfig("topic.b"));
+        EventStreamConfigSnapshot mergedSnapshot = snapshot.mergeMissing(moreStreamConfigs);
+
+        assertSame(
+            snapshot.patternEntries.get(0),
+            mergedSnapshot.patternEntries.get(0),
+            "Should not compile existing stream name patterns again"
+        );
+        assertSame(snapshot.topicPatternEntries.get(0), mergedSnapshot.topicPatternEntries.get(0));
+        assertSame(snapshot.get("/^stream\\..+/"), mergedSnapshot.get("/^stream\\..+/"));
+        assertEquals("stream.b", mergedSnapshot.resolve("stream.b").streamName);
+        assertEquals("stream.b", mergedSnapshot.resolveTopic("topic.b").streamName);
+        assertEquals("/^stream\\..+/", mergedSnapshot.resolve("stream.a").streamName);
+        assertFalse(snapshot.has("stream.b"), "Should not modify merged snapshot");
+    }
+
+    @Test
+    public void missingStreamsAreNotFetchedAgain() {
+        AtomicInteger loads = new AtomicInteger();
+        EventStreamConfig missingStreamConfigs = new EventStreamConfig(new EventStreamConfigLoader() {
+            public ObjectNode load(List<String> streamNames) {
+                loads.incrementAndGet();
+                ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+                for (String streamName : streamNames) {
+                    if (streamName.startsWith("stream")) {
+                        streamConfigs.set(streamName, GeneratingEventStreamConfigLoader.streamConfig(streamName));
+                    }
+                }
+                return streamConfigs;
+            }
+        }, new HashMap<>());
+        loads.set(0);
+
+        assertEquals(Collections.emptyList(), missingStreamConfigs.getTopics("nonexistent-stream"));
+        assertEquals(Collections.emptyList(), missingStreamConfigs.getTopics("nonexistent-stream"));
+        assertEquals(1, loads.get(), "Should not fetch a missing stream again");
+
+        assertEquals(Collections.singletonList("stream1"), missingStreamConfigs.getTopics("stream1"));
+        assertEquals(Collections.emptyList(), missingStreamConfigs.getTopics("nonexistent-stream"));
+        assertEquals(2, loads.get(), "Should remember missing streams after other streams are fetched");
+
+        missingStreamConfigs.reset();
+        loads.set(0);
+        assertEquals(Collections.emptyList(), missingStreamConfigs.getTopics("nonexistent-stream"));
+        assertEquals(1, loads.get(), "Should fetch missing streams again after a reset");
+    }
+
+    /**
+     * EventStreamConfigLoader that returns whatever all stream configs are currently set to.
+     */
+    private static class SettableEventStreamConfigLoader extends EventStreamConfigLoader {
+        final AtomicReference<ObjectNode> allStreamConfigs = new AtomicReference<>(
+            JsonNodeFactory.instance.objectNode()
+        );
+
+        public ObjectNode load(List<String> streamNames) {
+            return allStreamConfigs.get();
+        }
+
+        void set(String... streamNamesAndTopics) {
+            ObjectNode streamConfigs = JsonNodeFactory.instance.objectNode();
+            for (int i = 0; i < streamNamesAndTopics.length; i += 2) {
+                ObjectNode streamConfig = streamConfigs.putObject(streamNamesAndTopics[i]);
+                streamConfig.putArray("topics").add(streamNamesAndTopics[i + 1]);
+            }
+            allStreamConfigs.set(streamConfigs);
+        }
+    }
+
+    @Test
+    public void resetNotifiesChangeListeners() {
+        SettableEventStreamConfigLoader loader = new SettableEventStreamConfigLoader();
+        loader.set("stream0", "topic0", "stream1", "topic1");
+        EventStreamConfig changingStreamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        List<EventStreamConfigChange> changes = new ArrayList<>();
+        changingStreamConfigs.addChangeListener(changes::add);
+
+        changingStreamConfigs.reset();
+        assertEquals(0, changes.size(), "Should not notify if nothing changed");
+
+        loader.set("stream1", "topic1-new", "stream2", "topic2");
+        changingStreamConfigs.reset();
+        assertEquals(1, changes.size());
+        EventStreamConfigChange change = changes.get(0);
+        assertEquals(Collections.singletonList("stream2"), change.getAddedStreamNames());
+        assertEquals(Collections.singletonList("stream0"), change.getRemovedStreamNames());
+        assertEquals(Collections.singletonList("stream1"), change.getChangedStreamNames());
+        assertEquals(Collections.singletonList("topic1-new"), changingStreamConfigs.getTopics("stream1"));
+    }
+
+    @Test
+    public void refreshInBackground() throws InterruptedException {
+        SettableEventStreamConfigLoader loader = new SettableEventStreamConfigLoader();
+        loader.set("stream0", "topic0");
+        EventStreamConfig refreshingStreamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        CountDownLatch changed = new CountDownLatch(1);
+        refreshingStreamConfigs.addChangeListener(change -> {
+            if (change.getAddedStreamNames().contains("stream1")) {
+                changed.countDown();
+            }
+        });
+
+        refreshingStreamConfigs.startRefreshing(10, TimeUnit.MILLISECONDS);
+        try {
+            loader.set("stream0", "topic0", "stream1", "topic1");
+            assertTrue(changed.await(10, TimeUnit.SECONDS), "Should refresh stream configs in the background");
+            assertEquals("stream1", refreshingStreamConfigs.getStreamNameByTopic("topic1"));
+        } finally {
+            refreshingStreamConfigs.stopRefreshing();
+        }
+    }
+
+    @Test
+    public void refreshInBackgroundSurvivesErrors() throws InterruptedException {
+        SettableEventStreamConfigLoader loader = new SettableEventStreamConfigLoader() {
+            final AtomicInteger loads = new AtomicInteger();
+
+            public ObjectNode load(List<String> streamNames) {
+                if (loads.incrementAndGet() == 2) {
+                    throw new StackOverflowError("Simulated deeply nested stream config");
+                }
+                return super.load(streamNames);
+            }
+        };
+        loader.set("stream0", "topic0");
+        EventStreamConfig refreshingStreamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        CountDownLatch changed = new CountDownLatch(1);
+        refreshingStreamConfigs.addChangeListener(change -> changed.countDown());
+
+        loader.set("stream0", "topic0", "stream1", "topic1");
+        refreshingStreamConfigs.startRefreshing(10, TimeUnit.MILLISECONDS);
+        try {
+            assertTrue(changed.await(10, TimeUnit.SECONDS), "Should keep refreshing after a failed refresh");
+        } finally {
+            refreshingStreamConfigs.stopRefreshing();
+        }
+    }
 }
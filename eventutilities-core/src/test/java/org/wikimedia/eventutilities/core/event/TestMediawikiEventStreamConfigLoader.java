@@ -0,0 +1,201 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.wikimedia.eventutilities.core.json.JsonLoader;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMediawikiEventStreamConfigLoader {
+
+    private static final String testEndpoint = "https://meta.wikimedia.org/w/api.php";
+
+    private static HttpServer httpServer;
+    private static String httpServerEndpoint;
+    private static final AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * Serves a fake streamconfigs API, responding with
+     * {"streams": {name: {"topics": [name]}}} for each requested stream name.
+     * Responses never change, conditional requests get 304 Not Modified.
+     */
+    private static HttpServer createTestHttpServer() throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+        httpServer.createContext("/w/api.php", exchange -> {
+            requestCount.incrementAndGet();
+            String eTag = "\"" + exchange.getRequestURI().getRawQuery().hashCode() + "\"";
+            exchange.getResponseHeaders().set("ETag", eTag);
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                exchange.close();
+                return;
+            }
+
+            ObjectNode streams = JsonNodeFactory.instance.objectNode();
+            for (String param : exchange.getRequestURI().getRawQuery().split("&")) {
+                if (param.startsWith("streams=")) {
+                    String streamNames = URLDecoder.decode(param.substring("streams=".length()), "UTF-8");
+                    for (String streamName : streamNames.split("\\|")) {
+                        ObjectNode streamConfig = streams.putObject(streamName);
+                        streamConfig.putArray("topics").add(streamName);
+                    }
+                }
+            }
+            ObjectNode body = JsonNodeFactory.instance.objectNode();
+            body.set("streams", streams);
+
+            byte[] response = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+
+        return httpServer;
+    }
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        httpServer = createTestHttpServer();
+        httpServer.start();
+        InetSocketAddress address = httpServer.getAddress();
+        httpServerEndpoint = "http://" + address.getHostString() + ":" + address.getPort() + "/w/api.php";
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        httpServer.stop(0);
+    }
+
+    @BeforeEach
+    public void resetRequestCount() {
+        requestCount.set(0);
+    }
+
+    private static List<String> streamNames(int count) {
+        List<String> streamNames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            streamNames.add("mediawiki.stream_" + i);
+        }
+        return streamNames;
+    }
+
+    @Test
+    public void makeApiUri() {
+        URI uri = MediawikiEventStreamConfigLoader.makeMediawikiEventStreamConfigApiUri(
+            testEndpoint, Arrays.asList("stream.a", "stream/b")
+        );
+        assertEquals(
+            URI.create(testEndpoint + "?format=json&action=streamconfigs&all_settings=true&streams=stream.a%7Cstream%2Fb"),
+            uri,
+            "Should request URL encoded stream names"
+        );
+    }
+
+    @Test
+    public void makeApiUrisForAllStreams() {
+        List<URI> uris = MediawikiEventStreamConfigLoader.makeMediawikiEventStreamConfigApiUris(
+            testEndpoint, new ArrayList<>(), 10
+        );
+        assertEquals(1, uris.size(), "Should request all streams in one URI");
+        assertFalse(uris.get(0).toString().contains("streams="));
+    }
+
+    @Test
+    public void makeApiUrisInBatches() {
+        List<String> streamNames = streamNames(1000);
+        int maxUriLength = 500;
+        List<URI> uris = MediawikiEventStreamConfigLoader.makeMediawikiEventStreamConfigApiUris(
+            testEndpoint, streamNames, maxUriLength
+        );
+
+        assertTrue(uris.size() > 1, "Should split stream names into batches");
+        List<String> batchedStreamNames = new ArrayList<>();
+        for (URI uri : uris) {
+            assertTrue(uri.toString().length() <= maxUriLength, "Should not make URIs longer than maxUriLength");
+            String query = uri.getQuery();
+            batchedStreamNames.addAll(Arrays.asList(
+                query.substring(query.indexOf("streams=") + "streams=".length()).split("\\|")
+            ));
+        }
+        assertEquals(streamNames, batchedStreamNames, "Should request every stream name once, in order");
+    }
+
+    @Test
+    public void makeApiUrisWithTooLongStreamName() {
+        List<URI> uris = MediawikiEventStreamConfigLoader.makeMediawikiEventStreamConfigApiUris(
+            testEndpoint, Arrays.asList("a", new String(new char[200]).replace('\0', 'b'), "c"), 150
+        );
+        assertEquals(3, uris.size(), "Should request a stream name longer than maxUriLength by itself");
+    }
+
+    @Test
+    public void loadInBatches() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MediawikiEventStreamConfigLoader loader = new MediawikiEventStreamConfigLoader(
+                httpServerEndpoint, 500, executor
+            );
+            List<String> streamNames = streamNames(1000);
+            ObjectNode result = loader.load(streamNames);
+
+            int expectedRequests = MediawikiEventStreamConfigLoader.makeMediawikiEventStreamConfigApiUris(
+                httpServerEndpoint, streamNames, 500
+            ).size();
+            assertTrue(expectedRequests > 1);
+            assertEquals(expectedRequests, requestCount.get(), "Should make one request per batch");
+
+            ObjectNode streams = (ObjectNode) result.get("streams");
+            assertEquals(streamNames.size(), streams.size(), "Should merge the streams of all batches");
+            for (String streamName : streamNames) {
+                assertEquals(streamName, streams.get(streamName).get("topics").get(0).asText());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void loadInSingleRequest() {
+        MediawikiEventStreamConfigLoader loader = new MediawikiEventStreamConfigLoader(httpServerEndpoint);
+        ObjectNode result = loader.load(streamNames(10));
+        assertEquals(1, requestCount.get(), "Should not split short requests");
+        assertEquals(10, result.get("streams").size());
+    }
+
+    @Test
+    public void loadInBatchesNotModified() {
+        MediawikiEventStreamConfigLoader loader = new MediawikiEventStreamConfigLoader(httpServerEndpoint, 500, null);
+        List<String> streamNames = streamNames(100);
+        JsonLoader.getInstance().setConditionalRequests(true);
+        try {
+            ObjectNode result = loader.load(streamNames);
+            assertSame(result, loader.load(streamNames), "Should reuse merged result if no batch was modified");
+        } finally {
+            JsonLoader.getInstance().setConditionalRequests(false);
+        }
+        assertNotSame(
+            loader.load(streamNames),
+            loader.load(streamNames),
+            "Should merge again without conditional requests"
+        );
+    }
+}
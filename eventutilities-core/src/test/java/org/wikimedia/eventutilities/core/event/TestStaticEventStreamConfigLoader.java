@@ -0,0 +1,126 @@
+package org.wikimedia.eventutilities.core.event;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestStaticEventStreamConfigLoader {
+
+    private static final String testStreamConfigsFile =
+        "file://" + new File("src/test/resources/event_stream_configs.json").getAbsolutePath();
+
+    @TempDir
+    Path tempDir;
+
+    private static void writeStreamConfig(Path path, String streamName, long lastModifiedMillis) throws IOException {
+        Files.write(
+            path,
+            ("{\"" + streamName + "\": {\"topics\": [\"" + streamName + "\"]}}").getBytes(StandardCharsets.UTF_8)
+        );
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModifiedMillis));
+    }
+
+    @Test
+    public void loadIsMemoized() {
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader(testStreamConfigsFile);
+        ObjectNode streamConfigs = loader.load();
+        assertSame(streamConfigs, loader.load(), "Should load stream configs once");
+    }
+
+    @Test
+    public void loadRequestedStreams() {
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader(testStreamConfigsFile);
+        ObjectNode streamConfigs = loader.load("mediawiki.page-create");
+        assertEquals(1, streamConfigs.size(), "Should only return requested stream configs");
+        assertSame(
+            loader.load().get("mediawiki.page-create"),
+            streamConfigs.get("mediawiki.page-create")
+        );
+        assertEquals(0, loader.load("nonexistent.stream").size());
+    }
+
+    @Test
+    public void loadRequestedStreamsIsMemoized() throws IOException {
+        Path path = tempDir.resolve("stream_configs.json");
+        writeStreamConfig(path, "stream0", 1_000_000);
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader(path.toUri().toString());
+
+        ObjectNode streamConfigs = loader.load("stream0");
+        assertSame(streamConfigs, loader.load("stream0"), "Should memoize requested stream configs");
+        assertFalse(loader.reloadIfChanged());
+        assertSame(streamConfigs, loader.load("stream0"), "Should keep requested stream configs of unchanged file");
+
+        Files.write(path, "{\"stream0\": {\"topics\": [\"topic0\"]}}".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(2_000_000));
+        assertTrue(loader.reloadIfChanged());
+        ObjectNode reloadedStreamConfigs = loader.load("stream0");
+        assertNotSame(streamConfigs, reloadedStreamConfigs, "Should filter requested stream configs of changed file again");
+        assertEquals("topic0", reloadedStreamConfigs.get("stream0").get("topics").get(0).asText());
+    }
+
+    @Test
+    public void reloadIfChanged() throws IOException {
+        Path path = tempDir.resolve("stream_configs.json");
+        writeStreamConfig(path, "stream0", 1_000_000);
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader(path.toUri().toString());
+        ObjectNode streamConfigs = loader.load();
+
+        assertFalse(loader.reloadIfChanged(), "Should not reload unchanged file");
+
+        writeStreamConfig(path, "stream0", 2_000_000);
+        assertFalse(loader.reloadIfChanged(), "Should not reload file with unchanged content");
+        assertSame(streamConfigs, loader.load());
+
+        writeStreamConfig(path, "stream1", 3_000_000);
+        assertTrue(loader.reloadIfChanged(), "Should reload changed file");
+        assertTrue(loader.load().has("stream1"));
+
+        Files.write(path, "{\"stream2\": {\"top".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(4_000_000));
+        assertThrows(RuntimeException.class, loader::reloadIfChanged, "Should fail on half written file");
+        writeStreamConfig(path, "stream22", 4_000_000);
+        assertTrue(
+            loader.reloadIfChanged(),
+            "Should reload file completed with the same modification time as a failed read"
+        );
+        assertTrue(loader.load().has("stream22"));
+    }
+
+    @Test
+    public void reloadIfChangedNonFile() {
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader("http://localhost/stream_configs.json");
+        assertThrows(IllegalStateException.class, loader::reloadIfChanged);
+    }
+
+    @Test
+    public void watchFile() throws IOException, InterruptedException {
+        Path path = tempDir.resolve("stream_configs.json");
+        writeStreamConfig(path, "stream0", 1_000_000);
+        StaticEventStreamConfigLoader loader = new StaticEventStreamConfigLoader(path.toUri().toString());
+        EventStreamConfig streamConfigs = new EventStreamConfig(loader, new HashMap<>());
+
+        CountDownLatch changed = new CountDownLatch(1);
+        streamConfigs.addChangeListener(change -> changed.countDown());
+        loader.startWatching(streamConfigs::reset);
+        try {
+            writeStreamConfig(path, "stream1", 2_000_000);
+            assertTrue(changed.await(30, TimeUnit.SECONDS), "Should reload watched file when it changes");
+            assertEquals(Collections.singletonList("stream1"), streamConfigs.cachedStreamNames());
+        } finally {
+            loader.stopWatching();
+        }
+    }
+}
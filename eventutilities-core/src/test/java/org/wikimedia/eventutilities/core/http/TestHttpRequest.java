@@ -3,12 +3,17 @@ package org.wikimedia.eventutilities.core.http;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import com.sun.net.httpserver.HttpServer;
 
 import org.junit.jupiter.api.BeforeAll;
@@ -20,6 +25,7 @@ public class TestHttpRequest {
 
     private static HttpServer httpServer;
     private static InetSocketAddress httpServerAddress;
+    private static final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
 
     private static HttpServer createTestHttpServer() throws IOException {
         HttpServer httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
@@ -36,6 +42,19 @@ public class TestHttpRequest {
             exchange.close();
         });
 
+        // Responds with the status code in the query string and remembers the client port.
+        httpServer.createContext("/status", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(Integer.parseInt(exchange.getRequestURI().getQuery()), response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+
         return httpServer;
     }
 
@@ -74,4 +93,66 @@ public class TestHttpRequest {
 
         assertFalse(result.getSuccess());
     }
+
+    @Test
+    public void postJsonWithPooledClient() throws IOException {
+        String url = "http://" + httpServerAddress.getHostString() + ":" + httpServerAddress.getPort() + "/test";
+        try (CloseableHttpClient client = HttpClientFactory.createPooledHttpClient()) {
+            // POST more than once so that the pooled connection is reused.
+            for (int i = 0; i < 3; i++) {
+                HttpResult result = HttpRequest.postJson(
+                    client,
+                    url,
+                    JsonNodeFactory.instance.numberNode(i),
+                    statusCode -> statusCode == 200
+                );
+
+                assertTrue(result.getSuccess());
+                assertEquals(String.valueOf(i), result.getBody());
+            }
+        }
+    }
+
+    @Test
+    public void pooledClientReusesConnectionsAfterClientErrors() throws IOException {
+        String url = "http://" + httpServerAddress.getHostString() + ":" + httpServerAddress.getPort() + "/status?";
+        try (CloseableHttpClient client = HttpClientFactory.createPooledHttpClient()) {
+            clientPorts.clear();
+            for (int statusCode : new int[] {404, 200, 404, 200}) {
+                HttpResult result = HttpRequest.postJson(
+                    client, url + statusCode, JsonNodeFactory.instance.numberNode(statusCode), code -> code == 200
+                );
+                assertEquals(statusCode, result.getStatus());
+            }
+            assertEquals(1, clientPorts.size(), "Should reuse the connection after 4xx responses");
+
+            HttpRequest.postJson(client, url + 500, JsonNodeFactory.instance.numberNode(500), code -> code == 200);
+            HttpRequest.postJson(client, url + 200, JsonNodeFactory.instance.numberNode(200), code -> code == 200);
+            assertEquals(2, clientPorts.size(), "Should not reuse the connection after a 5xx response");
+        }
+    }
+
+    @Test
+    public void postJsonAsync() throws JsonProcessingException, InterruptedException, ExecutionException {
+        String url = "http://" + httpServerAddress.getHostString() + ":" + httpServerAddress.getPort() + "/test";
+        HttpResult result = HttpRequest.postJsonAsync(
+            url,
+            JsonNodeFactory.instance.numberNode(1234)
+        ).get();
+
+        assertTrue(result.getSuccess());
+        assertEquals(200, result.getStatus());
+        assertEquals("1234", result.getBody());
+    }
+
+    @Test
+    public void postJsonAsyncHttpFailureResponse() throws JsonProcessingException, InterruptedException, ExecutionException {
+        String url = "http://" + httpServerAddress.getHostString() + ":" + httpServerAddress.getPort() + "/notfound";
+        HttpResult result = HttpRequest.postJsonAsync(
+            url,
+            JsonNodeFactory.instance.numberNode(1234)
+        ).get();
+
+        assertFalse(result.getSuccess());
+    }
 }
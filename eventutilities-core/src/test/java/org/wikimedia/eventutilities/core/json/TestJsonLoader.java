@@ -0,0 +1,146 @@
+package org.wikimedia.eventutilities.core.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonLoader {
+
+    private static final URI yamlUri = URI.create(
+        "file://" + new File("src/test/resources/event-schemas/repo2/test_event.schema.yaml").getAbsolutePath()
+    );
+
+    private static final URI jsonUri = URI.create(
+        "file://" + new File("src/test/resources/event_stream_configs.json").getAbsolutePath()
+    );
+
+    @Test
+    public void loadYaml() throws JsonLoadingException {
+        JsonNode node = JsonLoader.getInstance().load(yamlUri);
+        assertEquals("test_event", node.get("title").asText());
+    }
+
+    @Test
+    public void loadJson() throws JsonLoadingException {
+        JsonNode node = JsonLoader.getInstance().load(jsonUri);
+        assertTrue(node.isObject(), "Should load JSON object");
+        assertTrue(node.size() > 0, "Should load JSON object fields");
+    }
+
+    @Test
+    public void parseInputStream() throws JsonLoadingException {
+        InputStream jsonIn = new ByteArrayInputStream(
+            "{\"title\": \"json\"}".getBytes(StandardCharsets.UTF_8)
+        );
+        assertEquals("json", JsonLoader.getInstance().parse(jsonIn).get("title").asText());
+
+        InputStream yamlIn = new ByteArrayInputStream(
+            "title: yaml\n".getBytes(StandardCharsets.UTF_8)
+        );
+        assertEquals("yaml", JsonLoader.getInstance().parse(yamlIn).get("title").asText());
+    }
+
+    @Test
+    public void parseBytes() throws JsonLoadingException {
+        byte[] data = "xx{\"title\": \"json\"}xx".getBytes(StandardCharsets.UTF_8);
+        assertEquals(
+            "json",
+            JsonLoader.getInstance().parse(data, 2, data.length - 4).get("title").asText(),
+            "Should parse JSON bytes at offset"
+        );
+        assertEquals(
+            "yaml",
+            JsonLoader.getInstance().parse("title: yaml\n".getBytes(StandardCharsets.UTF_8))
+                .get("title").asText(),
+            "Should parse YAML bytes"
+        );
+        assertThrows(JsonLoadingException.class, () -> JsonLoader.getInstance().parse(new byte[0]));
+    }
+
+    @Test
+    public void parseByteBuffer() throws JsonLoadingException {
+        byte[] data = "{\"title\": \"json\"}".getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer heapBuffer = ByteBuffer.wrap(data);
+        assertEquals("json", JsonLoader.getInstance().parse(heapBuffer).get("title").asText());
+        assertEquals(0, heapBuffer.position(), "Should not change buffer position");
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(data.length);
+        directBuffer.put(data).flip();
+        assertEquals("json", JsonLoader.getInstance().parse(directBuffer).get("title").asText());
+        assertEquals(0, directBuffer.position(), "Should not change buffer position");
+    }
+
+    @Test
+    public void parseEmptyInputStream() {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        assertThrows(JsonLoadingException.class, () -> JsonLoader.getInstance().parse(in));
+    }
+
+    @Test
+    public void loadNonExistent() {
+        assertThrows(
+            JsonLoadingException.class,
+            () -> JsonLoader.getInstance().load(yamlUri.resolve("non_existent.yaml"))
+        );
+    }
+
+    @Test
+    public void loadWithConditionalRequests() throws IOException, JsonLoadingException {
+        AtomicInteger version = new AtomicInteger(1);
+        AtomicInteger fullResponses = new AtomicInteger();
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        httpServer.createContext("/data.json", exchange -> {
+            String eTag = "\"v" + version.get() + "\"";
+            if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            } else {
+                fullResponses.incrementAndGet();
+                byte[] response = ("{\"version\": " + version.get() + "}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("ETag", eTag);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, response.length);
+                exchange.getResponseBody().write(response);
+            }
+            exchange.close();
+        });
+        httpServer.start();
+
+        try {
+            URI uri = URI.create(
+                "http://" + httpServer.getAddress().getHostString() + ":" +
+                httpServer.getAddress().getPort() + "/data.json"
+            );
+            JsonLoader jsonLoader = new JsonLoader();
+            jsonLoader.setConditionalRequests(true);
+
+            JsonNode first = jsonLoader.load(uri);
+            JsonNode second = jsonLoader.load(uri);
+            assertSame(first, second, "Should reuse parsed data if not modified");
+            assertEquals(1, fullResponses.get());
+            assertEquals(1, jsonLoader.getNotModifiedCount());
+
+            version.set(2);
+            JsonNode third = jsonLoader.load(uri);
+            assertEquals(2, third.get("version").asInt(), "Should load modified data");
+            assertEquals(2, fullResponses.get());
+
+            jsonLoader.setConditionalRequests(false);
+            assertNotSame(third, jsonLoader.load(uri), "Should not reuse data without conditional requests");
+        } finally {
+            httpServer.stop(0);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.wikimedia.eventutilities.core.json;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonSchemaLoader {
+
+    private static final URI testSchemaUri = URI.create(
+        "file://" + new File("src/test/resources/event-schemas/repo2/test_event.schema.yaml").getAbsolutePath()
+    );
+
+    private static final URI otherSchemaUri = URI.create(
+        "file://" + new File("src/test/resources/event-schemas/repo1/Echo_7731316.schema.json").getAbsolutePath()
+    );
+
+    /**
+     * JsonSchemaLoader that counts and slows down its uncached loads.
+     */
+    private static class CountingJsonSchemaLoader extends JsonSchemaLoader {
+        final AtomicInteger loadCount = new AtomicInteger();
+
+        protected JsonNode loadUncached(URI schemaUri) throws JsonLoadingException {
+            loadCount.incrementAndGet();
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.loadUncached(schemaUri);
+        }
+    }
+
+    @Test
+    public void load() throws JsonLoadingException {
+        JsonSchemaLoader schemaLoader = new JsonSchemaLoader();
+        JsonNode schema = schemaLoader.load(testSchemaUri);
+        assertEquals("test_event", schema.get("title").asText());
+        assertTrue(schemaLoader.isCached(testSchemaUri), "Should cache loaded schema");
+    }
+
+    @Test
+    public void concurrentLoadsAreSingleFlight() throws Exception {
+        CountingJsonSchemaLoader schemaLoader = new CountingJsonSchemaLoader();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<JsonNode>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> schemaLoader.load(testSchemaUri)));
+            }
+
+            JsonNode first = results.get(0).get();
+            for (Future<JsonNode> result : results) {
+                assertSame(first, result.get(), "Should share the same loaded schema");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, schemaLoader.loadCount.get(), "Should only load schema once");
+    }
+
+    @Test
+    public void failedLoadIsRetried() {
+        CountingJsonSchemaLoader schemaLoader = new CountingJsonSchemaLoader();
+        URI nonExistentUri = testSchemaUri.resolve("non_existent_schema.yaml");
+
+        assertThrows(JsonLoadingException.class, () -> schemaLoader.load(nonExistentUri));
+        assertThrows(JsonLoadingException.class, () -> schemaLoader.load(nonExistentUri));
+        assertEquals(2, schemaLoader.loadCount.get(), "Should not remember failed loads");
+    }
+
+    @Test
+    public void boundedCacheEvicts() throws JsonLoadingException {
+        List<URI> evicted = Collections.synchronizedList(new ArrayList<>());
+        JsonSchemaLoader schemaLoader = new JsonSchemaLoader(
+            JsonSchemaCachePolicy.newBuilder()
+                .maximumSize(1)
+                .evictionListener((uri, schema) -> evicted.add(uri))
+        );
+
+        schemaLoader.load(testSchemaUri);
+        schemaLoader.load(otherSchemaUri);
+
+        assertEquals(1, evicted.size(), "Should evict a schema when cache is full");
+        assertFalse(schemaLoader.isCached(evicted.get(0)), "Should not cache evicted schema");
+    }
+
+    @Test
+    public void maximumSizeAndWeightConflict() {
+        assertThrows(
+            IllegalStateException.class,
+            () -> JsonSchemaCachePolicy.newBuilder().maximumSize(10).maximumWeight(1_000),
+            "Should not allow maximumWeight after maximumSize"
+        );
+        assertThrows(
+            IllegalStateException.class,
+            () -> JsonSchemaCachePolicy.newBuilder().maximumWeight(1_000).maximumSize(10),
+            "Should not allow maximumSize after maximumWeight"
+        );
+    }
+
+    @Test
+    public void nodeCount() throws JsonLoadingException {
+        JsonNode node = new JsonSchemaLoader().parse("{\"a\": [1, 2], \"b\": {\"c\": true}}");
+        assertEquals(6, JsonSchemaCachePolicy.nodeCount(node));
+    }
+
+    @Test
+    public void refreshCached(@TempDir Path tempDir) throws IOException, JsonLoadingException {
+        Path latestSchemaFile = tempDir.resolve("latest");
+        Files.write(latestSchemaFile, "{\"title\": \"v1\"}".getBytes(StandardCharsets.UTF_8));
+        URI latestSchemaUri = latestSchemaFile.toUri();
+
+        JsonSchemaLoader schemaLoader = new JsonSchemaLoader();
+        assertEquals("v1", schemaLoader.load(latestSchemaUri).get("title").asText());
+
+        assertEquals(0, schemaLoader.refreshCached(uri -> true), "Should not replace unchanged schema");
+
+        Files.write(latestSchemaFile, "{\"title\": \"v2\"}".getBytes(StandardCharsets.UTF_8));
+        // Still served from the cache until refreshed.
+        assertEquals("v1", schemaLoader.load(latestSchemaUri).get("title").asText());
+        assertEquals(0, schemaLoader.refreshCached(uri -> false), "Should only refresh matching URIs");
+        assertEquals(1, schemaLoader.refreshCached(uri -> true), "Should replace changed schema");
+        assertEquals("v2", schemaLoader.load(latestSchemaUri).get("title").asText());
+    }
+
+    @Test
+    public void refreshCachedDoesNotRenewAccess() throws JsonLoadingException {
+        AtomicLong nanos = new AtomicLong();
+        JsonSchemaLoader schemaLoader = new JsonSchemaLoader(
+            JsonSchemaCachePolicy.newBuilder()
+                .expireAfterAccess(500, TimeUnit.MILLISECONDS)
+                .ticker(nanos::get)
+        );
+        schemaLoader.load(testSchemaUri);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        schemaLoader.refreshCached(uri -> true);
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+        assertFalse(schemaLoader.isCached(testSchemaUri), "Should expire schema that was only refreshed");
+    }
+
+    @Test
+    public void diskCache(@TempDir Path tempDir) throws IOException, JsonLoadingException {
+        Path schemaFile = tempDir.resolve("schema.json");
+        Files.write(schemaFile, "{\"title\": \"persisted\"}".getBytes(StandardCharsets.UTF_8));
+        URI schemaUri = schemaFile.toUri();
+        JsonSchemaDiskCache diskCache = new JsonSchemaDiskCache(tempDir.resolve("cache"));
+
+        JsonSchemaLoader schemaLoader = new JsonSchemaLoader();
+        schemaLoader.setDiskCache(diskCache);
+        JsonNode schema = schemaLoader.load(schemaUri);
+
+        // Make the schema unavailable at its URI, e.g. because of a broken response.
+        Files.write(schemaFile, "{\"title\": ".getBytes(StandardCharsets.UTF_8));
+
+        JsonSchemaLoader warmedSchemaLoader = new JsonSchemaLoader();
+        warmedSchemaLoader.setDiskCache(new JsonSchemaDiskCache(tempDir.resolve("cache")));
+        assertEquals(1, warmedSchemaLoader.warmFromDiskCache());
+        assertTrue(warmedSchemaLoader.isCached(schemaUri), "Should warm cache from disk");
+        assertEquals(schema, warmedSchemaLoader.load(schemaUri));
+
+        JsonSchemaLoader coldSchemaLoader = new JsonSchemaLoader();
+        coldSchemaLoader.setDiskCache(diskCache);
+        assertEquals(schema, coldSchemaLoader.load(schemaUri), "Should fall back to disk cache");
+
+        // Remove the schema at its URI.
+        Files.delete(schemaFile);
+        JsonSchemaLoader removedSchemaLoader = new JsonSchemaLoader();
+        removedSchemaLoader.setDiskCache(diskCache);
+        assertThrows(
+            JsonLoadingException.class,
+            () -> removedSchemaLoader.load(schemaUri),
+            "Should not fall back to disk cache for a schema that does not exist anymore"
+        );
+        assertFalse(Files.exists(diskCache.entryPath(schemaUri)), "Should delete removed schema from disk cache");
+        JsonSchemaLoader restartedSchemaLoader = new JsonSchemaLoader();
+        restartedSchemaLoader.setDiskCache(new JsonSchemaDiskCache(tempDir.resolve("cache")));
+        assertEquals(0, restartedSchemaLoader.warmFromDiskCache(), "Should not warm up removed schema");
+    }
+}
@@ -16,6 +16,7 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 import org.wikimedia.eventutilities.core.event.EventStreamConfigFactory;
@@ -26,6 +27,7 @@ import org.wikimedia.eventutilities.core.event.EventSchemaLoader;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
+import org.wikimedia.eventutilities.core.http.HttpRequest;
 import org.wikimedia.eventutilities.core.http.HttpResult;
 import org.wikimedia.eventutilities.core.json.JsonLoader;
 import org.wikimedia.eventutilities.core.json.JsonLoadingException;
@@ -76,6 +78,17 @@ public class TestCanaryEventProducer {
             }
         });
 
+        // Responds like an event service that does not know the URL.
+        httpServer.createContext("/bad_url", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                IOUtils.toString(in, StandardCharsets.UTF_8);
+            }
+            byte[] response = "{\"error\": \"not found\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+
         return httpServer;
     }
 
@@ -227,4 +240,62 @@ public class TestCanaryEventProducer {
         assertFalse(result.getSuccess(), "Should fail post events");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPostEventsAsync() throws InterruptedException, ExecutionException {
+        ObjectNode canaryEvent = canaryEventProducer.canaryEvent(
+            "mediawiki.page-create"
+        );
+
+        URI url = URI.create(String.format(
+            "http://%s:%d/v1/events", httpServerAddress.getHostString(), httpServerAddress.getPort()
+        ));
+
+        HttpResult result = CanaryEventProducer.postEventsAsync(
+            HttpRequest.getDefaultHttpAsyncClient(),
+            url,
+            Collections.singletonList(canaryEvent),
+            5000
+        ).get();
+        assertTrue(result.getSuccess(), "Should post events asynchronously");
+    }
+
+    @Test
+    public void testPostCanaryEventsConcurrently() {
+        String httpServerUrl = String.format(
+            "http://%s:%d", httpServerAddress.getHostString(), httpServerAddress.getPort()
+        );
+        // eventgate-main POSTs succeed, eventgate-analytics-external POSTs get a 404.
+        HashMap<String, URI> eventServiceToUriMap = new HashMap<String, URI>() {{
+            put("eventgate-main-eqiad", URI.create(httpServerUrl + "/v1/events?datacenter=eqiad"));
+            put("eventgate-main-codfw", URI.create(httpServerUrl + "/v1/events?datacenter=codfw"));
+            put("eventgate-analytics-external-eqiad", URI.create(httpServerUrl + "/bad_url?datacenter=eqiad"));
+            put("eventgate-analytics-external-codfw", URI.create(httpServerUrl + "/bad_url?datacenter=codfw"));
+        }};
+        CanaryEventProducer localCanaryEventProducer = new CanaryEventProducer(
+            new EventSchemaLoader(schemaBaseUris),
+            EventStreamConfigFactory.createStaticEventStreamConfig(testStreamConfigsFile, eventServiceToUriMap)
+        );
+        List<String> streams = Arrays.asList("mediawiki.page-create", "eventlogging_SearchSatisfaction");
+
+        // A timeout that does not fit in an int should not turn into a negative request timeout.
+        for (long timeoutMillis : new long[] {5000, Long.MAX_VALUE}) {
+            Map<URI, HttpResult> results = localCanaryEventProducer.postCanaryEventsConcurrently(
+                streams, timeoutMillis
+            );
+
+            assertEquals(
+                new HashSet<>(eventServiceToUriMap.values()),
+                results.keySet(),
+                "Should have a result for each event service url"
+            );
+            for (Map.Entry<URI, HttpResult> result : results.entrySet()) {
+                assertEquals(
+                    result.getKey().getPath().equals("/v1/events"),
+                    result.getValue().getSuccess(),
+                    "Should only succeed posting to a working event service url " + result.getKey()
+                );
+            }
+        }
+    }
+
+}